@@ -0,0 +1,70 @@
+/******************************************************************************
+ *  Compilation:  see BenchmarkRunner.java
+ *  Dependencies: none
+ *
+ *  A single benchmark run by BenchmarkRunner. The runner repeatedly calls
+ *  prepare() (untimed) followed by invoke() (timed); invoke() performs a
+ *  small batch of operations and returns how many it performed, so latency
+ *  is reported per operation averaged over the batch.
+ *
+ ******************************************************************************/
+
+public abstract class Benchmark {
+
+    // written by consume() so the JIT cannot drop benchmarked results
+    private static long blackhole;
+
+    private final String name;
+
+    protected Benchmark(String name) {
+        this.name = name;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    /**
+     * Called once before the warmup iterations.
+     */
+    public void setUp() {
+
+    }
+
+    /**
+     * Called before every invocation, outside of the timed region.
+     */
+    public void prepare() {
+
+    }
+
+    /**
+     * Runs one timed batch and returns the number of operations performed.
+     */
+    public abstract int invoke();
+
+    /**
+     * Called once after the last measurement iteration, to release large
+     * state before the next benchmark starts.
+     */
+    public void tearDown() {
+
+    }
+
+    protected static void consume(long value) {
+        blackhole += value;
+    }
+
+    protected static void consume(boolean value) {
+        blackhole += value ? 1 : 0;
+    }
+
+    protected static void consume(Object value) {
+        blackhole += System.identityHashCode(value);
+    }
+
+    static long blackhole() {
+        return blackhole;
+    }
+
+}
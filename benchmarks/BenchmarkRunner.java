@@ -0,0 +1,215 @@
+/******************************************************************************
+ *  Compilation:  javac -cp algs4.jar:../week1/percolation-testing/percolation:../week2/queues
+ *                    *.java
+ *  Execution:    java -cp algs4.jar:../week1/percolation-testing/percolation:../week2/queues:.
+ *                    BenchmarkRunner [filter ...]
+ *  Dependencies: Benchmark.java PercolationBenchmarks.java QueueBenchmarks.java
+ *
+ *  Runs every registered benchmark whose name contains one of the filters
+ *  (or all of them) on the current thread and prints, per benchmark:
+ *
+ *    - throughput in operations per second (mean and stddev over iterations)
+ *    - per-operation latency percentiles over all measured invocations
+ *    - bytes allocated per operation and GC collections during measurement
+ *
+ *  Iteration settings can be changed with -Dbench.warmup=<iterations>,
+ *  -Dbench.iterations=<iterations> and -Dbench.time=<ms per iteration>.
+ *
+ ******************************************************************************/
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class BenchmarkRunner {
+
+    private static final int WARMUP_ITERATIONS = Integer.getInteger("bench.warmup", 3);
+    private static final int MEASUREMENT_ITERATIONS = Integer.getInteger("bench.iterations", 5);
+    private static final long ITERATION_NANOS = Long.getLong("bench.time", 1000L) * 1000000L;
+
+    private static final double[] PERCENTILES = {0.5, 0.9, 0.99, 0.999};
+
+    public static void main(String[] args) {
+        List<Benchmark> benchmarks = new ArrayList<>();
+        benchmarks.addAll(PercolationBenchmarks.create());
+        benchmarks.addAll(QueueBenchmarks.create());
+
+        printHeader();
+
+        for (Benchmark benchmark : benchmarks) {
+            if (matches(benchmark, args)) {
+                run(benchmark);
+            }
+        }
+
+        System.out.println("(checksum " + Benchmark.blackhole() + ")");
+    }
+
+    private static boolean matches(Benchmark benchmark, String[] filters) {
+        if (filters.length == 0) {
+            return true;
+        }
+
+        for (String filter : filters) {
+            if (benchmark.name().contains(filter)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static void run(Benchmark benchmark) {
+        benchmark.setUp();
+
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            runIteration(benchmark, null);
+        }
+
+        System.gc();
+
+        double[] throughputs = new double[MEASUREMENT_ITERATIONS];
+        LatencySamples samples = new LatencySamples();
+        long totalOps = 0;
+
+        long gcCountBefore = gcCount();
+        long allocatedBefore = allocatedBytes();
+
+        for (int i = 0; i < MEASUREMENT_ITERATIONS; i++) {
+            long[] result = runIteration(benchmark, samples);
+            totalOps += result[0];
+            throughputs[i] = result[0] / (result[1] / 1e9);
+        }
+
+        long allocated = allocatedBytes() - allocatedBefore;
+        long gcCount = gcCount() - gcCountBefore;
+
+        benchmark.tearDown();
+
+        double[] latencies = samples.percentiles(PERCENTILES);
+
+        String message = String.format("%-48s %14.0f %10.0f %9.1f %9.1f %9.1f %9.1f %10.1f %5d",
+                benchmark.name(),
+                mean(throughputs),
+                stddev(throughputs),
+                latencies[0],
+                latencies[1],
+                latencies[2],
+                latencies[3],
+                allocated / (double) totalOps,
+                gcCount);
+        System.out.println(message);
+    }
+
+    /**
+     * Returns {operations, timed nanoseconds} for one iteration.
+     */
+    private static long[] runIteration(Benchmark benchmark, LatencySamples samples) {
+        long ops = 0;
+        long timed = 0;
+        long deadline = System.nanoTime() + ITERATION_NANOS;
+
+        while (System.nanoTime() < deadline) {
+            benchmark.prepare();
+
+            long start = System.nanoTime();
+            int invocationOps = benchmark.invoke();
+            long elapsed = System.nanoTime() - start;
+
+            ops += invocationOps;
+            timed += elapsed;
+
+            if (samples != null) {
+                samples.add(elapsed / (double) invocationOps);
+            }
+        }
+
+        return new long[] {ops, timed};
+    }
+
+    private static void printHeader() {
+        String message = String.format("%-48s %14s %10s %9s %9s %9s %9s %10s %5s",
+                "benchmark",
+                "ops/s",
+                "stddev",
+                "p50 ns",
+                "p90 ns",
+                "p99 ns",
+                "p99.9 ns",
+                "B/op",
+                "gc");
+        System.out.println(message);
+    }
+
+    private static double mean(double[] values) {
+        double sum = 0;
+
+        for (double value : values) {
+            sum += value;
+        }
+
+        return sum / values.length;
+    }
+
+    private static double stddev(double[] values) {
+        if (values.length < 2) {
+            return Double.NaN;
+        }
+
+        double mean = mean(values);
+        double sum = 0;
+
+        for (double value : values) {
+            sum += (value - mean) * (value - mean);
+        }
+
+        return Math.sqrt(sum / (values.length - 1));
+    }
+
+    private static long allocatedBytes() {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static long gcCount() {
+        long result = 0;
+
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            result += Math.max(0, gc.getCollectionCount());
+        }
+
+        return result;
+    }
+
+    private static class LatencySamples {
+
+        private double[] data = new double[1024];
+        private int size;
+
+        private void add(double sample) {
+            if (size == data.length) {
+                data = Arrays.copyOf(data, size * 2);
+            }
+
+            data[size++] = sample;
+        }
+
+        private double[] percentiles(double[] percentiles) {
+            double[] sorted = Arrays.copyOf(data, size);
+            Arrays.sort(sorted);
+
+            double[] result = new double[percentiles.length];
+
+            for (int i = 0; i < percentiles.length; i++) {
+                int index = (int) Math.ceil(percentiles[i] * size) - 1;
+                result[i] = sorted[Math.max(0, Math.min(size - 1, index))];
+            }
+
+            return result;
+        }
+    }
+
+}
@@ -0,0 +1,234 @@
+/******************************************************************************
+ *  Compilation:  javac -cp ../week2/queues DequeContentionBenchmark.java
+ *  Execution:    java -cp ../week2/queues:.
+ *                    DequeContentionBenchmark [maxThreads [ms per run]]
+ *  Dependencies: Deque.java ConcurrentDeque.java
+ *
+ *  Measures deques shared by 1, 2, 4, ... maxThreads threads, each thread
+ *  adding and removing at random ends of a deque pre-filled with 1024
+ *  items, and prints total operations per second for:
+ *
+ *    - locked:     Deque behind one global lock
+ *    - lockFree:   ConcurrentDeque
+ *    - jdk:        java.util.concurrent.ConcurrentLinkedDeque, for reference
+ *
+ *  Each configuration runs twice and only the second run is reported, so the
+ *  first serves as warmup.
+ *
+ ******************************************************************************/
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class DequeContentionBenchmark {
+
+    private static final int PREFILL = 1024;
+    private static final int OPS_PER_CHECK = 256;
+
+    // shared so the benchmark measures the deques rather than boxing
+    private static final Integer[] ITEMS = new Integer[PREFILL];
+
+    // sum of removed values, printed so the JIT cannot drop the removes
+    private static long checksum;
+
+    static {
+        for (int i = 0; i < PREFILL; i++) {
+            ITEMS[i] = i;
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int maxThreads = (args.length > 0) ? Integer.parseInt(args[0])
+                : Runtime.getRuntime().availableProcessors();
+        long runNanos = ((args.length > 1) ? Long.parseLong(args[1]) : 1000L) * 1000000L;
+
+        String header = String.format("%-10s %8s %14s", "deque", "threads", "ops/s");
+        System.out.println(header);
+
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            for (String name : new String[] {"locked", "lockFree", "jdk"}) {
+                run(name, threads, runNanos);
+                double opsPerSecond = run(name, threads, runNanos);
+
+                String message = String.format("%-10s %8d %14.0f", name, threads, opsPerSecond);
+                System.out.println(message);
+            }
+        }
+
+        System.out.println("(checksum " + checksum + ")");
+    }
+
+    private static double run(String name, int threads, long runNanos)
+            throws InterruptedException {
+        SharedDeque deque = create(name);
+
+        for (int i = 0; i < PREFILL; i++) {
+            deque.addLast(ITEMS[i]);
+        }
+
+        AtomicBoolean stop = new AtomicBoolean();
+        CountDownLatch start = new CountDownLatch(1);
+        long[] ops = new long[threads];
+        long[] sums = new long[threads];
+        Thread[] workers = new Thread[threads];
+
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+
+            workers[t] = new Thread(() -> {
+                SplittableRandom random = new SplittableRandom(thread);
+                long count = 0;
+                long sum = 0;
+
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+
+                while (!stop.get()) {
+                    for (int i = 0; i < OPS_PER_CHECK; i++) {
+                        Integer item = ITEMS[i];
+
+                        if (random.nextBoolean()) {
+                            deque.addFirst(item);
+                        } else {
+                            deque.addLast(item);
+                        }
+
+                        Integer removed = random.nextBoolean() ? deque.pollFirst() : deque.pollLast();
+                        sum += (removed == null) ? 0 : removed;
+                    }
+
+                    count += 2 * OPS_PER_CHECK;
+                }
+
+                ops[thread] = count;
+                sums[thread] = sum;
+            });
+            workers[t].start();
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        Thread.sleep(runNanos / 1000000L);
+        stop.set(true);
+
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        long elapsed = System.nanoTime() - begin;
+        long total = 0;
+
+        for (int t = 0; t < threads; t++) {
+            total += ops[t];
+            checksum += sums[t];
+        }
+
+        return total / (elapsed / 1e9);
+    }
+
+    private static SharedDeque create(String name) {
+        switch (name) {
+            case "locked":
+                return new LockedDeque();
+            case "lockFree":
+                return new LockFreeDeque();
+            default:
+                return new JdkDeque();
+        }
+    }
+
+    private interface SharedDeque {
+
+        void addFirst(Integer item);
+
+        void addLast(Integer item);
+
+        Integer pollFirst();
+
+        Integer pollLast();
+    }
+
+    private static class LockedDeque
+            implements SharedDeque {
+
+        private final Deque<Integer> deque = new Deque<>();
+
+        @Override
+        public synchronized void addFirst(Integer item) {
+            deque.addFirst(item);
+        }
+
+        @Override
+        public synchronized void addLast(Integer item) {
+            deque.addLast(item);
+        }
+
+        @Override
+        public synchronized Integer pollFirst() {
+            return deque.isEmpty() ? null : deque.removeFirst();
+        }
+
+        @Override
+        public synchronized Integer pollLast() {
+            return deque.isEmpty() ? null : deque.removeLast();
+        }
+    }
+
+    private static class LockFreeDeque
+            implements SharedDeque {
+
+        private final ConcurrentDeque<Integer> deque = new ConcurrentDeque<>();
+
+        @Override
+        public void addFirst(Integer item) {
+            deque.addFirst(item);
+        }
+
+        @Override
+        public void addLast(Integer item) {
+            deque.addLast(item);
+        }
+
+        @Override
+        public Integer pollFirst() {
+            return deque.pollFirst();
+        }
+
+        @Override
+        public Integer pollLast() {
+            return deque.pollLast();
+        }
+    }
+
+    private static class JdkDeque
+            implements SharedDeque {
+
+        private final ConcurrentLinkedDeque<Integer> deque = new ConcurrentLinkedDeque<>();
+
+        @Override
+        public void addFirst(Integer item) {
+            deque.addFirst(item);
+        }
+
+        @Override
+        public void addLast(Integer item) {
+            deque.addLast(item);
+        }
+
+        @Override
+        public Integer pollFirst() {
+            return deque.pollFirst();
+        }
+
+        @Override
+        public Integer pollLast() {
+            return deque.pollLast();
+        }
+    }
+
+}
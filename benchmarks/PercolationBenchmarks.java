@@ -0,0 +1,348 @@
+/******************************************************************************
+ *  Compilation:  see BenchmarkRunner.java
+ *  Dependencies: Benchmark.java Percolation.java PercolationStats.java
+ *
+ *  Benchmarks for Percolation.open/isFull/percolates across grid sizes and
+ *  union-find modes, and for whole PercolationStats trials.
+ *
+ ******************************************************************************/
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+public class PercolationBenchmarks {
+
+    private static final int[] GRID_SIZES = {64, 512, 2048};
+    private static final int[] TRIAL_GRID_SIZES = {64, 256};
+    private static final int[] PERMUTATION_GRID_SIZES = {256, 1024};
+
+    private static final int BATCH = 256;
+    private static final int TRIALS_PER_INVOCATION = 4;
+    private static final long SEED = 20170101L;
+
+    // open fraction the query benchmarks fill their grid to, near the threshold
+    private static final double QUERY_OPEN_FRACTION = 0.6;
+
+    public static List<Benchmark> create() {
+        List<Benchmark> result = new ArrayList<>();
+
+        for (Mode mode : Mode.values()) {
+            for (int n : GRID_SIZES) {
+                result.add(new OpenBenchmark(n, mode));
+                result.add(new OpenAllBenchmark(n, mode));
+                result.add(new IsFullBenchmark(n, mode));
+                result.add(new PercolatesBenchmark(n, mode));
+            }
+        }
+
+        for (int n : TRIAL_GRID_SIZES) {
+            result.add(new TrialsBenchmark(n));
+        }
+
+        for (int n : PERMUTATION_GRID_SIZES) {
+            result.add(new PermutationTrialBenchmark(n, false));
+            result.add(new PermutationTrialBenchmark(n, true));
+        }
+
+        return result;
+    }
+
+    private enum Mode {
+        WEIGHTED_QUICK_UNION,
+        PACKED,
+        BACKWASH_FREE;
+
+        private Percolation create(int n) {
+            switch (this) {
+                case PACKED:
+                    return new Percolation(n, UnionFindType.PACKED);
+                case BACKWASH_FREE:
+                    return new Percolation(n, UnionFindType.PACKED, true);
+                default:
+                    return new Percolation(n, UnionFindType.WEIGHTED_QUICK_UNION);
+            }
+        }
+    }
+
+    private static int[] createPermutation(int siteCount, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        int[] result = new int[siteCount];
+
+        for (int i = 0; i < siteCount; i++) {
+            int j = random.nextInt(i + 1);
+            result[i] = result[j];
+            result[j] = i;
+        }
+
+        return result;
+    }
+
+    private abstract static class GridBenchmark
+            extends Benchmark {
+
+        protected final int n;
+        protected final Mode mode;
+        protected Percolation perc;
+        protected int[] siteIndices;
+
+        private GridBenchmark(String operation, int n, Mode mode) {
+            super(String.format("percolation.%s[n=%d,%s]", operation, n, mode));
+            this.n = n;
+            this.mode = mode;
+        }
+
+        @Override
+        public void setUp() {
+            perc = mode.create(n);
+            siteIndices = createPermutation(n * n, SEED);
+        }
+
+        @Override
+        public void tearDown() {
+            perc = null;
+            siteIndices = null;
+        }
+
+        protected void openFraction(double fraction) {
+            int count = (int) (fraction * siteIndices.length);
+
+            for (int i = 0; i < count; i++) {
+                perc.openSite(siteIndices[i]);
+            }
+        }
+    }
+
+    private static class OpenBenchmark
+            extends GridBenchmark {
+
+        private int cursor;
+
+        private OpenBenchmark(int n, Mode mode) {
+            super("open", n, mode);
+        }
+
+        @Override
+        public void prepare() {
+            if ((cursor + BATCH) > siteIndices.length) {
+                perc.reset();
+                cursor = 0;
+            }
+        }
+
+        @Override
+        public int invoke() {
+            int end = Math.min(cursor + BATCH, siteIndices.length);
+            int ops = end - cursor;
+
+            for (int i = cursor; i < end; i++) {
+                int siteIndex = siteIndices[i];
+                perc.open((siteIndex / n) + 1, (siteIndex % n) + 1);
+            }
+
+            cursor = end;
+            return ops;
+        }
+    }
+
+    private static class OpenAllBenchmark
+            extends GridBenchmark {
+
+        private int cursor;
+
+        private OpenAllBenchmark(int n, Mode mode) {
+            super("openAll", n, mode);
+        }
+
+        @Override
+        public void prepare() {
+            if ((cursor + BATCH) > siteIndices.length) {
+                perc.reset();
+                cursor = 0;
+            }
+        }
+
+        @Override
+        public int invoke() {
+            int end = Math.min(cursor + BATCH, siteIndices.length);
+            int ops = end - cursor;
+
+            consume(perc.openAll(siteIndices, cursor, end));
+
+            cursor = end;
+            return ops;
+        }
+    }
+
+    private static class IsFullBenchmark
+            extends GridBenchmark {
+
+        private int cursor;
+
+        private IsFullBenchmark(int n, Mode mode) {
+            super("isFull", n, mode);
+        }
+
+        @Override
+        public void setUp() {
+            super.setUp();
+            openFraction(QUERY_OPEN_FRACTION);
+        }
+
+        @Override
+        public int invoke() {
+            int full = 0;
+
+            for (int i = 0; i < BATCH; i++) {
+                int siteIndex = siteIndices[cursor];
+                cursor = (cursor + 1) % siteIndices.length;
+
+                if (perc.isFull((siteIndex / n) + 1, (siteIndex % n) + 1)) {
+                    full++;
+                }
+            }
+
+            consume(full);
+            return BATCH;
+        }
+    }
+
+    private static class PercolatesBenchmark
+            extends GridBenchmark {
+
+        private PercolatesBenchmark(int n, Mode mode) {
+            super("percolates", n, mode);
+        }
+
+        @Override
+        public void setUp() {
+            super.setUp();
+            openFraction(QUERY_OPEN_FRACTION);
+        }
+
+        @Override
+        public int invoke() {
+            int percolating = 0;
+
+            for (int i = 0; i < BATCH; i++) {
+                if (perc.percolates()) {
+                    percolating++;
+                }
+            }
+
+            consume(percolating);
+            return BATCH;
+        }
+    }
+
+    private static class TrialsBenchmark
+            extends Benchmark {
+
+        private final int n;
+        private long seed = SEED;
+
+        private TrialsBenchmark(int n) {
+            super(String.format("percolationStats.trials[n=%d]", n));
+            this.n = n;
+        }
+
+        @Override
+        public int invoke() {
+            PercolationStats stats = new PercolationStats(n, TRIALS_PER_INVOCATION, seed++, 1);
+            consume(Double.doubleToLongBits(stats.mean()));
+            return TRIALS_PER_INVOCATION;
+        }
+    }
+
+    /**
+     * One trial per invocation, drawing sites either from a full in-place
+     * shuffle or lazily from a SitePermutation, to compare the two sources.
+     */
+    private static class PermutationTrialBenchmark
+            extends Benchmark {
+
+        private static final int BLOCK = 1024;
+
+        private final int n;
+        private final boolean lazy;
+        private final SiteRandom random = new Xoshiro256Random(SEED);
+        private long seed = SEED;
+        private Percolation perc;
+        private int[] siteIndices;
+        private SitePermutation permutation;
+
+        private PermutationTrialBenchmark(int n, boolean lazy) {
+            super(String.format("percolation.trial[n=%d,%s]", n, lazy ? "lazy" : "shuffle"));
+            this.n = n;
+            this.lazy = lazy;
+        }
+
+        @Override
+        public void setUp() {
+            perc = new Percolation(n, UnionFindType.PACKED, true);
+
+            if (lazy) {
+                permutation = new SitePermutation(n * n, random);
+                siteIndices = new int[BLOCK];
+            } else {
+                siteIndices = new int[n * n];
+            }
+        }
+
+        @Override
+        public void tearDown() {
+            perc = null;
+            siteIndices = null;
+            permutation = null;
+        }
+
+        @Override
+        public void prepare() {
+            perc.reset();
+            random.setSeed(seed++);
+
+            if (lazy) {
+                permutation.reset();
+            }
+        }
+
+        @Override
+        public int invoke() {
+            consume(lazy ? runLazy() : runShuffled());
+            return 1;
+        }
+
+        private int runShuffled() {
+            for (int i = 0; i < siteIndices.length; i++) {
+                int j = random.nextInt(i + 1);
+                siteIndices[i] = siteIndices[j];
+                siteIndices[j] = i;
+            }
+
+            int opened = 0;
+
+            while (!perc.openSite(siteIndices[opened++])) {
+                // keep opening until the system percolates
+            }
+
+            return opened;
+        }
+
+        private int runLazy() {
+            int opened = 0;
+
+            while (true) {
+                int count = permutation.next(siteIndices);
+
+                for (int i = 0; i < count; i++) {
+                    opened++;
+
+                    if (perc.openSite(siteIndices[i])) {
+                        return opened;
+                    }
+                }
+            }
+        }
+    }
+
+}
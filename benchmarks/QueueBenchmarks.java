@@ -0,0 +1,451 @@
+/******************************************************************************
+ *  Compilation:  see BenchmarkRunner.java
+ *  Dependencies: Benchmark.java Deque.java ResizingArrayDeque.java
+ *                IntDeque.java RandomizedQueue.java
+ *
+ *  Benchmarks for Deque and ResizingArrayDeque add/remove at both ends,
+ *  fill/drain and iterate, and for RandomizedQueue enqueue/dequeue/sample/
+ *  iterate, including reading only the first few items of an iterator. The deque benchmarks run the same code against both deques
+ *  ("deque." is the linked one, "arrayDeque." the circular array), and
+ *  "intDeque." repeats fill/drain and iterate without boxing.
+ *
+ ******************************************************************************/
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+public class QueueBenchmarks {
+
+    private static final int BATCH = 1024;
+    private static final int[] ITERATE_SIZES = {1024, 1 << 20};
+    private static final int FILL_SIZE = 1 << 20;
+
+    // shared so the benchmarks measure the structures rather than boxing
+    private static final Integer[] ITEMS = new Integer[BATCH];
+
+    static {
+        for (int i = 0; i < BATCH; i++) {
+            ITEMS[i] = i;
+        }
+    }
+
+    public static List<Benchmark> create() {
+        List<Benchmark> result = new ArrayList<>();
+
+        for (String prefix : new String[] {"deque", "arrayDeque"}) {
+            result.add(new DequeBenchmark(prefix, "addFirst+removeFirst", true, true));
+            result.add(new DequeBenchmark(prefix, "addLast+removeLast", false, false));
+            result.add(new DequeBenchmark(prefix, "addLast+removeFirst", false, true));
+            result.add(new DequeBenchmark(prefix, "addFirst+removeLast", true, false));
+            result.add(new DequeFillBenchmark(prefix));
+
+            for (int size : ITERATE_SIZES) {
+                result.add(new DequeIterateBenchmark(prefix, size));
+            }
+        }
+
+        result.add(new IntDequeFillBenchmark());
+
+        for (int size : ITERATE_SIZES) {
+            result.add(new IntDequeIterateBenchmark(size));
+        }
+
+        result.add(new RandomizedQueueBenchmark());
+        result.add(new RandomizedQueueSampleBenchmark());
+
+        for (int size : ITERATE_SIZES) {
+            result.add(new RandomizedQueueIterateBenchmark(size));
+            result.add(new RandomizedQueueIterateFirstBenchmark(size));
+        }
+
+        return result;
+    }
+
+    /**
+     * Deque and ResizingArrayDeque share an API but no interface.
+     */
+    private interface BenchmarkDeque
+            extends Iterable<Integer> {
+
+        void addFirst(Integer item);
+
+        void addLast(Integer item);
+
+        Integer removeFirst();
+
+        Integer removeLast();
+    }
+
+    private static BenchmarkDeque createDeque(String prefix) {
+        return prefix.equals("deque") ? new LinkedBenchmarkDeque() : new ArrayBenchmarkDeque();
+    }
+
+    private static class LinkedBenchmarkDeque
+            implements BenchmarkDeque {
+
+        private final Deque<Integer> deque = new Deque<>();
+
+        @Override
+        public void addFirst(Integer item) {
+            deque.addFirst(item);
+        }
+
+        @Override
+        public void addLast(Integer item) {
+            deque.addLast(item);
+        }
+
+        @Override
+        public Integer removeFirst() {
+            return deque.removeFirst();
+        }
+
+        @Override
+        public Integer removeLast() {
+            return deque.removeLast();
+        }
+
+        @Override
+        public Iterator<Integer> iterator() {
+            return deque.iterator();
+        }
+    }
+
+    private static class ArrayBenchmarkDeque
+            implements BenchmarkDeque {
+
+        private final ResizingArrayDeque<Integer> deque = new ResizingArrayDeque<>();
+
+        @Override
+        public void addFirst(Integer item) {
+            deque.addFirst(item);
+        }
+
+        @Override
+        public void addLast(Integer item) {
+            deque.addLast(item);
+        }
+
+        @Override
+        public Integer removeFirst() {
+            return deque.removeFirst();
+        }
+
+        @Override
+        public Integer removeLast() {
+            return deque.removeLast();
+        }
+
+        @Override
+        public Iterator<Integer> iterator() {
+            return deque.iterator();
+        }
+    }
+
+    private static class DequeBenchmark
+            extends Benchmark {
+
+        private final boolean addFirst;
+        private final boolean removeFirst;
+        private final BenchmarkDeque deque;
+
+        private DequeBenchmark(String prefix, String name, boolean addFirst, boolean removeFirst) {
+            super(prefix + "." + name);
+            this.addFirst = addFirst;
+            this.removeFirst = removeFirst;
+            this.deque = createDeque(prefix);
+        }
+
+        @Override
+        public int invoke() {
+            for (int i = 0; i < BATCH; i++) {
+                if (addFirst) {
+                    deque.addFirst(ITEMS[i]);
+                } else {
+                    deque.addLast(ITEMS[i]);
+                }
+            }
+
+            long sum = 0;
+
+            for (int i = 0; i < BATCH; i++) {
+                sum += removeFirst ? deque.removeFirst() : deque.removeLast();
+            }
+
+            consume(sum);
+            return 2 * BATCH;
+        }
+    }
+
+    /**
+     * Grows a deque from empty to FILL_SIZE and drains it again, so every
+     * invocation pays for node allocation or for resizing in both directions.
+     */
+    private static class DequeFillBenchmark
+            extends Benchmark {
+
+        private final String prefix;
+
+        private DequeFillBenchmark(String prefix) {
+            super(String.format("%s.fill+drain[size=%d]", prefix, FILL_SIZE));
+            this.prefix = prefix;
+        }
+
+        @Override
+        public int invoke() {
+            BenchmarkDeque deque = createDeque(prefix);
+
+            for (int i = 0; i < FILL_SIZE; i++) {
+                deque.addLast(ITEMS[i % BATCH]);
+            }
+
+            long sum = 0;
+
+            for (int i = 0; i < FILL_SIZE; i++) {
+                sum += deque.removeFirst();
+            }
+
+            consume(sum);
+            return 2 * FILL_SIZE;
+        }
+    }
+
+    private static class DequeIterateBenchmark
+            extends Benchmark {
+
+        private final String prefix;
+        private final int size;
+        private BenchmarkDeque deque;
+
+        private DequeIterateBenchmark(String prefix, int size) {
+            super(String.format("%s.iterate[size=%d]", prefix, size));
+            this.prefix = prefix;
+            this.size = size;
+        }
+
+        @Override
+        public void setUp() {
+            deque = createDeque(prefix);
+
+            for (int i = 0; i < size; i++) {
+                deque.addLast(ITEMS[i % BATCH]);
+            }
+        }
+
+        @Override
+        public void tearDown() {
+            deque = null;
+        }
+
+        @Override
+        public int invoke() {
+            long sum = 0;
+
+            for (Integer item : deque) {
+                sum += item;
+            }
+
+            consume(sum);
+            return size;
+        }
+    }
+
+    private static class IntDequeFillBenchmark
+            extends Benchmark {
+
+        private IntDequeFillBenchmark() {
+            super(String.format("intDeque.fill+drain[size=%d]", FILL_SIZE));
+        }
+
+        @Override
+        public int invoke() {
+            IntDeque deque = new IntDeque();
+
+            for (int i = 0; i < FILL_SIZE; i++) {
+                deque.addLast(i % BATCH);
+            }
+
+            long sum = 0;
+
+            for (int i = 0; i < FILL_SIZE; i++) {
+                sum += deque.removeFirst();
+            }
+
+            consume(sum);
+            return 2 * FILL_SIZE;
+        }
+    }
+
+    private static class IntDequeIterateBenchmark
+            extends Benchmark {
+
+        private final int size;
+        private IntDeque deque;
+        private long sum;
+
+        private IntDequeIterateBenchmark(int size) {
+            super(String.format("intDeque.forEach[size=%d]", size));
+            this.size = size;
+        }
+
+        @Override
+        public void setUp() {
+            deque = new IntDeque();
+
+            for (int i = 0; i < size; i++) {
+                deque.addLast(i % BATCH);
+            }
+        }
+
+        @Override
+        public void tearDown() {
+            deque = null;
+        }
+
+        @Override
+        public int invoke() {
+            sum = 0;
+            deque.forEach(item -> sum += item);
+
+            consume(sum);
+            return size;
+        }
+    }
+
+    private static class RandomizedQueueBenchmark
+            extends Benchmark {
+
+        private final RandomizedQueue<Integer> queue = new RandomizedQueue<>();
+
+        private RandomizedQueueBenchmark() {
+            super("randomizedQueue.enqueue+dequeue");
+        }
+
+        @Override
+        public int invoke() {
+            for (int i = 0; i < BATCH; i++) {
+                queue.enqueue(ITEMS[i]);
+            }
+
+            long sum = 0;
+
+            for (int i = 0; i < BATCH; i++) {
+                sum += queue.dequeue();
+            }
+
+            consume(sum);
+            return 2 * BATCH;
+        }
+    }
+
+    private static class RandomizedQueueSampleBenchmark
+            extends Benchmark {
+
+        private final RandomizedQueue<Integer> queue = new RandomizedQueue<>();
+
+        private RandomizedQueueSampleBenchmark() {
+            super("randomizedQueue.sample");
+        }
+
+        @Override
+        public void setUp() {
+            for (int i = 0; i < BATCH; i++) {
+                queue.enqueue(ITEMS[i]);
+            }
+        }
+
+        @Override
+        public int invoke() {
+            long sum = 0;
+
+            for (int i = 0; i < BATCH; i++) {
+                sum += queue.sample();
+            }
+
+            consume(sum);
+            return BATCH;
+        }
+    }
+
+    private static class RandomizedQueueIterateBenchmark
+            extends Benchmark {
+
+        private final int size;
+        private RandomizedQueue<Integer> queue;
+
+        private RandomizedQueueIterateBenchmark(int size) {
+            super(String.format("randomizedQueue.iterate[size=%d]", size));
+            this.size = size;
+        }
+
+        @Override
+        public void setUp() {
+            queue = new RandomizedQueue<>();
+
+            for (int i = 0; i < size; i++) {
+                queue.enqueue(ITEMS[i % BATCH]);
+            }
+        }
+
+        @Override
+        public void tearDown() {
+            queue = null;
+        }
+
+        @Override
+        public int invoke() {
+            long sum = 0;
+            Iterator<Integer> it = queue.iterator();
+
+            while (it.hasNext()) {
+                sum += it.next();
+            }
+
+            consume(sum);
+            return size;
+        }
+    }
+
+    private static class RandomizedQueueIterateFirstBenchmark
+            extends Benchmark {
+
+        private static final int FIRST = 10;
+
+        private final int size;
+        private RandomizedQueue<Integer> queue;
+
+        private RandomizedQueueIterateFirstBenchmark(int size) {
+            super(String.format("randomizedQueue.iterateFirst%d[size=%d]", FIRST, size));
+            this.size = size;
+        }
+
+        @Override
+        public void setUp() {
+            queue = new RandomizedQueue<>();
+
+            for (int i = 0; i < size; i++) {
+                queue.enqueue(ITEMS[i % BATCH]);
+            }
+        }
+
+        @Override
+        public void tearDown() {
+            queue = null;
+        }
+
+        @Override
+        public int invoke() {
+            long sum = 0;
+            Iterator<Integer> it = queue.iterator();
+
+            for (int i = 0; i < FIRST; i++) {
+                sum += it.next();
+            }
+
+            consume(sum);
+            return FIRST;
+        }
+    }
+
+}
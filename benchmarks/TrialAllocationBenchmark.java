@@ -0,0 +1,139 @@
+/******************************************************************************
+ *  Compilation:  javac -cp algs4.jar:../week1/percolation-testing/percolation
+ *                    TrialAllocationBenchmark.java
+ *  Execution:    java -cp algs4.jar:../week1/percolation-testing/percolation:.
+ *                    TrialAllocationBenchmark n trials
+ *  Dependencies: Percolation.java
+ *
+ *  Runs the same seeded percolation trials twice on the current thread:
+ *
+ *    - allocating: a new Percolation and permutation array for every trial
+ *    - reusing:    one Percolation and permutation array, reset per trial
+ *
+ *  and prints wall time, bytes allocated by the thread and GC activity for
+ *  each, so the effect of Percolation.reset() can be checked.
+ *
+ ******************************************************************************/
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.SplittableRandom;
+
+public class TrialAllocationBenchmark {
+
+    private static final long SEED = 20170101L;
+
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            throw new IllegalArgumentException("Expected n and trials");
+        }
+
+        int n = Integer.parseInt(args[0]);
+        int trials = Integer.parseInt(args[1]);
+
+        // warm up both paths before measuring
+        runAllocating(n, Math.max(1, trials / 10));
+        runReusing(n, Math.max(1, trials / 10));
+
+        measure("allocating", n, trials, false);
+        measure("reusing", n, trials, true);
+    }
+
+    private static void measure(String name, int n, int trials, boolean reuse) {
+        System.gc();
+
+        long gcCountBefore = gcCount();
+        long gcTimeBefore = gcTime();
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+
+        long opened = reuse ? runReusing(n, trials) : runAllocating(n, trials);
+
+        long elapsed = System.nanoTime() - start;
+        long allocated = allocatedBytes() - allocatedBefore;
+
+        String message = String.format(
+                "%-10s n=%d trials=%d time=%.1f ms allocated=%.1f MB (%.0f B/trial) "
+                        + "gc=%d (%d ms) opened=%d",
+                name,
+                n,
+                trials,
+                elapsed / 1e6,
+                allocated / (1024.0 * 1024.0),
+                allocated / (double) trials,
+                gcCount() - gcCountBefore,
+                gcTime() - gcTimeBefore,
+                opened);
+        System.out.println(message);
+    }
+
+    private static long runAllocating(int n, int trials) {
+        long opened = 0;
+
+        for (int i = 0; i < trials; i++) {
+            Percolation perc = new Percolation(n, UnionFindType.PACKED, true);
+            int[] siteIndices = new int[n * n];
+            opened += runTrial(perc, siteIndices, SEED + i);
+        }
+
+        return opened;
+    }
+
+    private static long runReusing(int n, int trials) {
+        long opened = 0;
+        Percolation perc = new Percolation(n, UnionFindType.PACKED, true);
+        int[] siteIndices = new int[n * n];
+
+        for (int i = 0; i < trials; i++) {
+            perc.reset();
+            opened += runTrial(perc, siteIndices, SEED + i);
+        }
+
+        return opened;
+    }
+
+    private static int runTrial(Percolation perc, int[] siteIndices, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+
+        for (int i = 0; i < siteIndices.length; i++) {
+            int j = random.nextInt(i + 1);
+            siteIndices[i] = siteIndices[j];
+            siteIndices[j] = i;
+        }
+
+        for (int i = 0; i < siteIndices.length; i++) {
+            if (perc.openSite(siteIndices[i])) {
+                return i + 1;
+            }
+        }
+
+        return siteIndices.length;
+    }
+
+    private static long allocatedBytes() {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static long gcCount() {
+        long result = 0;
+
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            result += Math.max(0, gc.getCollectionCount());
+        }
+
+        return result;
+    }
+
+    private static long gcTime() {
+        long result = 0;
+
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            result += Math.max(0, gc.getCollectionTime());
+        }
+
+        return result;
+    }
+
+}
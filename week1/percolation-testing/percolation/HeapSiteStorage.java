@@ -0,0 +1,118 @@
+/******************************************************************************
+ *  Name:    Evan Zeimet
+ *  NetID:   podnov
+ *  Precept: P01
+ *
+ *  Partner Name:    N/A
+ *  Partner NetID:   N/A
+ *  Partner Precept: N/A
+ *
+ *  Description:  SiteStorage in chunked heap arrays.
+ ******************************************************************************/
+
+import java.util.Arrays;
+
+/**
+ * Entries live in chunks of {@code 2^20}, so no single array has to exceed the
+ * JVM's limit. A little over 9 bytes of heap per site.
+ */
+public final class HeapSiteStorage
+        implements SiteStorage {
+
+    private static final int CHUNK_SHIFT = 20;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final long CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private final long size;
+    private final long[][] parent;
+    private final byte[][] flags;
+    private final long[][] openSites;
+
+    public HeapSiteStorage(long n) {
+        if (n < 0) {
+            throw new IllegalArgumentException("Size must not be negative");
+        }
+
+        long chunks = (n + CHUNK_MASK) >>> CHUNK_SHIFT;
+        if (chunks > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Size must be below 2^51");
+        }
+
+        this.size = n;
+        this.parent = new long[(int) chunks][];
+        this.flags = new byte[(int) chunks][];
+
+        for (int i = 0; i < chunks; i++) {
+            int length = (int) Math.min(CHUNK_SIZE, n - ((long) i << CHUNK_SHIFT));
+            parent[i] = new long[length];
+            flags[i] = new byte[length];
+        }
+
+        long words = (n + 63) >>> 6;
+        int wordChunks = (int) ((words + CHUNK_MASK) >>> CHUNK_SHIFT);
+        this.openSites = new long[wordChunks][];
+
+        for (int i = 0; i < wordChunks; i++) {
+            int length = (int) Math.min(CHUNK_SIZE, words - ((long) i << CHUNK_SHIFT));
+            openSites[i] = new long[length];
+        }
+
+        clearComponents();
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public long parent(long site) {
+        return parent[(int) (site >>> CHUNK_SHIFT)][(int) (site & CHUNK_MASK)];
+    }
+
+    @Override
+    public void setParent(long site, long value) {
+        parent[(int) (site >>> CHUNK_SHIFT)][(int) (site & CHUNK_MASK)] = value;
+    }
+
+    @Override
+    public int flags(long site) {
+        return flags[(int) (site >>> CHUNK_SHIFT)][(int) (site & CHUNK_MASK)];
+    }
+
+    @Override
+    public void setFlags(long site, int value) {
+        flags[(int) (site >>> CHUNK_SHIFT)][(int) (site & CHUNK_MASK)] = (byte) value;
+    }
+
+    @Override
+    public long openWord(long word) {
+        return openSites[(int) (word >>> CHUNK_SHIFT)][(int) (word & CHUNK_MASK)];
+    }
+
+    @Override
+    public void setOpenWord(long word, long bits) {
+        openSites[(int) (word >>> CHUNK_SHIFT)][(int) (word & CHUNK_MASK)] = bits;
+    }
+
+    @Override
+    public void clearComponents() {
+        for (int i = 0; i < parent.length; i++) {
+            Arrays.fill(parent[i], -1L);
+            Arrays.fill(flags[i], (byte) 0);
+        }
+    }
+
+    @Override
+    public void clearOpenSites() {
+        for (long[] chunk : openSites) {
+            Arrays.fill(chunk, 0L);
+        }
+    }
+
+    // the garbage collector reclaims the arrays
+    @Override
+    public void close() {
+    }
+
+}
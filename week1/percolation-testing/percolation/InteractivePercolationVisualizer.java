@@ -1,7 +1,7 @@
 /******************************************************************************
  *  Compilation:  javac InteractivePercolationVisualizer.java
  *  Execution:    java InteractivePercolationVisualizer n
- *  Dependencies: PercolationVisualizer.java Percolation.java
+ *  Dependencies: PercolationRenderer.java Percolation.java
  *                StdDraw.java StdOut.java
  *
  *  This program takes the grid size n as a command-line argument.
@@ -25,8 +25,8 @@ public class InteractivePercolationVisualizer {
         StdOut.println(n);
 
         StdDraw.enableDoubleBuffering();
-        Percolation perc = new Percolation(n);
-        PercolationVisualizer.draw(perc, n);
+        Percolation perc = new Percolation(n, UnionFindType.PACKED, true);
+        PercolationRenderer renderer = new PercolationRenderer(perc, n);
         StdDraw.show();
 
         while (true) {
@@ -48,10 +48,11 @@ public class InteractivePercolationVisualizer {
                         StdOut.println(i + " " + j);
                     }
                     perc.open(i, j);
+
+                    // redraw what changed in the n-by-n percolation system
+                    renderer.siteOpened(i, j);
                 }
 
-                // draw n-by-n percolation system
-                PercolationVisualizer.draw(perc, n);
                 StdDraw.show();
             }
 
@@ -0,0 +1,201 @@
+/******************************************************************************
+ *  Name:    Evan Zeimet
+ *  NetID:   podnov
+ *  Precept: P01
+ *
+ *  Partner Name:    N/A
+ *  Partner NetID:   N/A
+ *  Partner Precept: N/A
+ *
+ *  Description:  Selects the lattice, i.e. the neighbors of every site, of a
+ *                Percolation.
+ ******************************************************************************/
+
+/**
+ * Sites are numbered row-major from zero. The two-dimensional lattices are
+ * rows-by-cols; {@link #CUBIC} is rows layers of cols-by-cols, layer after
+ * layer. The system percolates from the first row (layer) to the last. With
+ * periodic sides the columns wrap around, and for {@link #CUBIC} the rows
+ * within a layer as well, so only the top and bottom remain boundaries.
+ */
+public enum Lattice {
+
+    /**
+     * North, south, west and east, the course's lattice. Site threshold about
+     * 0.5927.
+     */
+    SQUARE {
+        @Override
+        public int neighbors(int siteIndex, int rows, int cols, boolean periodic, int[] result) {
+            int row = siteIndex / cols;
+            int col = siteIndex - (row * cols);
+            int count = 0;
+
+            count = addSite(result, count, 0, row - 1, col, rows, cols, false, periodic);
+            count = addSite(result, count, 0, row + 1, col, rows, cols, false, periodic);
+            count = addSite(result, count, 0, row, col - 1, rows, cols, false, periodic);
+            count = addSite(result, count, 0, row, col + 1, rows, cols, false, periodic);
+
+            return count;
+        }
+    },
+
+    /**
+     * The square lattice plus its four diagonals. Site threshold about 0.4073.
+     */
+    MOORE {
+        @Override
+        public int neighbors(int siteIndex, int rows, int cols, boolean periodic, int[] result) {
+            int row = siteIndex / cols;
+            int col = siteIndex - (row * cols);
+            int count = 0;
+
+            for (int rowOffset = -1; rowOffset <= 1; rowOffset++) {
+                for (int colOffset = -1; colOffset <= 1; colOffset++) {
+                    if ((rowOffset != 0) || (colOffset != 0)) {
+                        count = addSite(result, count, 0, row + rowOffset, col + colOffset,
+                                rows, cols, false, periodic);
+                    }
+                }
+            }
+
+            return count;
+        }
+    },
+
+    /**
+     * The square lattice plus the north-east and south-west diagonal, which
+     * is the triangular lattice sheared onto the grid. Site threshold 1/2.
+     */
+    TRIANGULAR {
+        @Override
+        public int neighbors(int siteIndex, int rows, int cols, boolean periodic, int[] result) {
+            int count = SQUARE.neighbors(siteIndex, rows, cols, periodic, result);
+            int row = siteIndex / cols;
+            int col = siteIndex - (row * cols);
+
+            count = addSite(result, count, 0, row - 1, col + 1, rows, cols, false, periodic);
+            count = addSite(result, count, 0, row + 1, col - 1, rows, cols, false, periodic);
+
+            return count;
+        }
+    },
+
+    /**
+     * The honeycomb as a brick wall: west, east and either south or north,
+     * alternating like a checkerboard. Site threshold about 0.6970. With
+     * periodic sides the column count must be even, or the wrapped columns
+     * would break the alternation.
+     */
+    HEXAGONAL {
+        @Override
+        public int neighbors(int siteIndex, int rows, int cols, boolean periodic, int[] result) {
+            int row = siteIndex / cols;
+            int col = siteIndex - (row * cols);
+            int verticalRow = (((row + col) & 1) == 0) ? (row + 1) : (row - 1);
+            int count = 0;
+
+            count = addSite(result, count, 0, verticalRow, col, rows, cols, false, periodic);
+            count = addSite(result, count, 0, row, col - 1, rows, cols, false, periodic);
+            count = addSite(result, count, 0, row, col + 1, rows, cols, false, periodic);
+
+            return count;
+        }
+
+        @Override
+        void validate(int rows, int cols, boolean periodic) {
+            if (periodic && ((cols & 1) != 0)) {
+                throw new IllegalArgumentException("Periodic hexagonal lattices need an even column count");
+            }
+        }
+    },
+
+    /**
+     * rows layers of cols-by-cols with six neighbors, percolating from the
+     * first layer to the last. Site threshold about 0.3116.
+     */
+    CUBIC {
+        @Override
+        public int neighbors(int siteIndex, int rows, int cols, boolean periodic, int[] result) {
+            int layerSize = cols * cols;
+            int layer = siteIndex / layerSize;
+            int base = layer * layerSize;
+            int layerIndex = siteIndex - base;
+            int row = layerIndex / cols;
+            int col = layerIndex - (row * cols);
+            int count = 0;
+
+            if (layer > 0) {
+                result[count++] = siteIndex - layerSize;
+            }
+
+            if (layer < (rows - 1)) {
+                result[count++] = siteIndex + layerSize;
+            }
+
+            count = addSite(result, count, base, row - 1, col, cols, cols, periodic, periodic);
+            count = addSite(result, count, base, row + 1, col, cols, cols, periodic, periodic);
+            count = addSite(result, count, base, row, col - 1, cols, cols, periodic, periodic);
+            count = addSite(result, count, base, row, col + 1, cols, cols, periodic, periodic);
+
+            return count;
+        }
+
+        @Override
+        public long layerSize(int cols) {
+            return (long) cols * cols;
+        }
+    };
+
+    // the most neighbors any lattice reports, the size neighbors() needs
+    public static final int MAX_NEIGHBORS = 8;
+
+    /**
+     * Stores the indices of the sites adjacent to {@code siteIndex} in
+     * {@code result} and returns how many there are. Depending on the
+     * dimension and on wrapping, an index may repeat or be the site itself.
+     */
+    public abstract int neighbors(int siteIndex, int rows, int cols, boolean periodic,
+            int[] result);
+
+    /**
+     * Returns the number of sites in the first (and last) row or layer.
+     */
+    public long layerSize(int cols) {
+        return cols;
+    }
+
+    public long siteCount(int rows, int cols) {
+        return rows * layerSize(cols);
+    }
+
+    public long siteCount(int n) {
+        return siteCount(n, n);
+    }
+
+    void validate(int rows, int cols, boolean periodic) {
+    }
+
+    private static int addSite(int[] result, int count, int base, int row, int col,
+            int rows, int cols, boolean periodicRows, boolean periodicCols) {
+        if ((row < 0) || (row >= rows)) {
+            if (!periodicRows) {
+                return count;
+            }
+
+            row = (row < 0) ? (row + rows) : (row - rows);
+        }
+
+        if ((col < 0) || (col >= cols)) {
+            if (!periodicCols) {
+                return count;
+            }
+
+            col = (col < 0) ? (col + cols) : (col - cols);
+        }
+
+        result[count] = base + (row * cols) + col;
+        return count + 1;
+    }
+
+}
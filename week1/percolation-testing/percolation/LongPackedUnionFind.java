@@ -0,0 +1,127 @@
+/******************************************************************************
+ *  Name:    Evan Zeimet
+ *  NetID:   podnov
+ *  Precept: P01
+ *
+ *  Partner Name:    N/A
+ *  Partner NetID:   N/A
+ *  Partner Precept: N/A
+ *
+ *  Description:  PackedUnionFind with long indices, on heap or off-heap
+ *                storage.
+ ******************************************************************************/
+
+/**
+ * The same layout as {@link PackedUnionFind} with flags: a non-negative entry
+ * is the parent of a site, a negative entry marks a root and holds the negated
+ * size of its component, and every root carries a byte of flag bits. The
+ * entries live in a {@link SiteStorage}, chunked on the heap by default.
+ * Indices are not validated.
+ */
+public final class LongPackedUnionFind {
+
+    private final SiteStorage storage;
+    private long count;
+
+    public LongPackedUnionFind(long n) {
+        this(new HeapSiteStorage(n));
+    }
+
+    /**
+     * Uses fresh or cleared {@code storage}, every site its own component.
+     */
+    public LongPackedUnionFind(SiteStorage storage) {
+        this(storage, storage.size());
+    }
+
+    // resumes storage that already holds count components
+    LongPackedUnionFind(SiteStorage storage, long count) {
+        this.storage = storage;
+        this.count = count;
+    }
+
+    /**
+     * Puts every site back into its own component without reallocating.
+     */
+    public void reset() {
+        storage.clearComponents();
+        count = storage.size();
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public long find(long p) {
+        SiteStorage storage = this.storage;
+        long next = storage.parent(p);
+
+        while (next >= 0) {
+            long grandparent = storage.parent(next);
+
+            if (grandparent < 0) {
+                return next;
+            }
+
+            storage.setParent(p, grandparent);
+            p = grandparent;
+            next = storage.parent(p);
+        }
+
+        return p;
+    }
+
+    public boolean connected(long p, long q) {
+        return find(p) == find(q);
+    }
+
+    public void union(long p, long q) {
+        long rootP = find(p);
+        long rootQ = find(q);
+
+        if (rootP == rootQ) {
+            return;
+        }
+
+        // roots hold negated sizes, so the smaller value is the larger tree
+        if (storage.parent(rootP) <= storage.parent(rootQ)) {
+            link(rootQ, rootP);
+        } else {
+            link(rootP, rootQ);
+        }
+
+        count--;
+    }
+
+    private void link(long child, long root) {
+        storage.setParent(root, storage.parent(root) + storage.parent(child));
+        storage.setParent(child, root);
+        storage.setFlags(root, storage.flags(root) | storage.flags(child));
+    }
+
+    /**
+     * Returns the number of sites in the component containing {@code p}.
+     */
+    public long size(long p) {
+        return -storage.parent(find(p));
+    }
+
+    /**
+     * Returns the flags of the component containing {@code p}.
+     */
+    public int flags(long p) {
+        return storage.flags(find(p));
+    }
+
+    /**
+     * Adds {@code bits} to the component containing {@code p} and returns the
+     * resulting flags of that component.
+     */
+    public int addFlags(long p, int bits) {
+        long root = find(p);
+        int result = (byte) (storage.flags(root) | bits);
+        storage.setFlags(root, result);
+        return result;
+    }
+
+}
@@ -0,0 +1,409 @@
+/******************************************************************************
+ *  Name:    Evan Zeimet
+ *  NetID:   podnov
+ *  Precept: P01
+ *
+ *  Partner Name:    N/A
+ *  Partner NetID:   N/A
+ *  Partner Precept: N/A
+ *
+ *  Description:  Model a rows-by-cols percolation system with long site
+ *                indices, for systems beyond 2^31 sites.
+ ******************************************************************************/
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * {@link Percolation} on the square lattice with long rows, columns and site
+ * indices. It always runs backwash-free on a {@link LongPackedUnionFind}, so
+ * there are no virtual sites. All per-site state sits in one
+ * {@link SiteStorage}: a little over 9 bytes per site, on the heap by default
+ * or off-heap with {@link OffHeapSiteStorage}, where a file-backed grid can be
+ * checkpointed and resumed in a later run, also after a crash: such a grid
+ * logs every open, and the opens committed by the last checkpoint are
+ * replayed when its file is resumed.
+ */
+public class LongPercolation
+        implements AutoCloseable {
+
+    private static final int CONNECTED_TOP = 1;
+    private static final int CONNECTED_BOTTOM = 2;
+    private static final int CONNECTED_BOTH = CONNECTED_TOP | CONNECTED_BOTTOM;
+
+    // OffHeapSiteStorage state slots written by checkpoint()
+    private static final int STATE_ROWS = 0;
+    private static final int STATE_COLS = 1;
+    private static final int STATE_OPEN_SITES = 2;
+    private static final int STATE_COMPONENTS = 3;
+    private static final int STATE_PERCOLATES = 4;
+
+    // opens between checkpoints when main runs on a file
+    private static final long CHECKPOINT_INTERVAL = 1L << 26;
+
+    private final long rows;
+    private final long cols;
+    private final long siteCount;
+    private long openSiteCount;
+    private boolean percolates;
+    private final SiteStorage storage;
+    // same instance as storage when file-backed, otherwise null
+    private final OffHeapSiteStorage log;
+    private final LongPackedUnionFind uf;
+
+    public LongPercolation(long rows, long cols) {
+        this(rows, cols, new HeapSiteStorage(createSiteCount(rows, cols)));
+    }
+
+    /**
+     * Runs on fresh or cleared {@code storage} sized for rows * cols sites.
+     * {@link #close()} closes the storage as well.
+     */
+    public LongPercolation(long rows, long cols, SiteStorage storage) {
+        this(rows, cols, storage, 0, storage.size(), false);
+    }
+
+    private LongPercolation(long rows, long cols, SiteStorage storage, long openSiteCount,
+            long componentCount, boolean percolates) {
+        long siteCount = createSiteCount(rows, cols);
+
+        if (storage.size() != siteCount) {
+            String message = String.format("Storage holds %s sites, not %s",
+                    storage.size(), siteCount);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.rows = rows;
+        this.cols = cols;
+        this.siteCount = siteCount;
+        this.openSiteCount = openSiteCount;
+        this.percolates = percolates;
+        this.storage = storage;
+        this.log = isFileBacked(storage) ? (OffHeapSiteStorage) storage : null;
+        this.uf = new LongPackedUnionFind(storage, componentCount);
+    }
+
+    private static long createSiteCount(long rows, long cols) {
+        if ((rows <= 0) || (cols <= 0)) {
+            throw new IllegalArgumentException("Dimension must be greater than 0");
+        }
+
+        try {
+            return Math.multiplyExact(rows, cols);
+        } catch (ArithmeticException e) {
+            String message = String.format("%s by %s sites do not fit a long", rows, cols);
+            throw new IllegalArgumentException(message, e);
+        }
+    }
+
+    /**
+     * Creates a rows-by-cols system in a new memory-mapped file at
+     * {@code path}, replacing any file there.
+     */
+    public static LongPercolation create(Path path, long rows, long cols) throws IOException {
+        OffHeapSiteStorage storage = OffHeapSiteStorage.create(path, createSiteCount(rows, cols));
+        LongPercolation result = new LongPercolation(rows, cols, storage);
+        result.checkpoint();
+        return result;
+    }
+
+    private static boolean isFileBacked(SiteStorage storage) {
+        return (storage instanceof OffHeapSiteStorage)
+                && ((OffHeapSiteStorage) storage).isFileBacked();
+    }
+
+    /**
+     * Reopens the system saved at {@code path} by its last
+     * {@link #checkpoint()} or {@link #close()}. A file that changed after
+     * that, because its run crashed, is cleared and rebuilt by replaying the
+     * opens logged up to the checkpoint; later opens are lost.
+     */
+    public static LongPercolation resume(Path path) throws IOException {
+        OffHeapSiteStorage storage = OffHeapSiteStorage.open(path);
+
+        try {
+            long rows = storage.state(STATE_ROWS);
+            long cols = storage.state(STATE_COLS);
+
+            if (storage.isClean()) {
+                return new LongPercolation(rows,
+                        cols,
+                        storage,
+                        storage.state(STATE_OPEN_SITES),
+                        storage.state(STATE_COMPONENTS),
+                        storage.state(STATE_PERCOLATES) != 0);
+            }
+
+            long loggedOpens = storage.loggedOpens();
+            storage.rewind();
+            LongPercolation result = new LongPercolation(rows, cols, storage);
+
+            // each open logs its site again, over the entry it came from
+            for (long i = 0; i < loggedOpens; i++) {
+                result.openSiteIndex(storage.loggedOpen(i));
+            }
+
+            result.checkpoint();
+            return result;
+        } catch (RuntimeException e) {
+            storage.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Forces the whole system to its file so it can be resumed from this
+     * point. Only systems on file-backed {@link OffHeapSiteStorage} can be
+     * checkpointed.
+     */
+    public void checkpoint() {
+        OffHeapSiteStorage fileStorage = fileStorage();
+
+        fileStorage.setState(STATE_ROWS, rows);
+        fileStorage.setState(STATE_COLS, cols);
+        fileStorage.setState(STATE_OPEN_SITES, openSiteCount);
+        fileStorage.setState(STATE_COMPONENTS, uf.count());
+        fileStorage.setState(STATE_PERCOLATES, percolates ? 1 : 0);
+        fileStorage.checkpoint();
+    }
+
+    private OffHeapSiteStorage fileStorage() {
+        if (log == null) {
+            throw new IllegalStateException("Only file-backed storage can be checkpointed");
+        }
+
+        return log;
+    }
+
+    /**
+     * Checkpoints a file-backed system, then releases its storage. The
+     * instance must not be used afterwards.
+     */
+    @Override
+    public void close() {
+        try {
+            if (log != null) {
+                checkpoint();
+            }
+        } finally {
+            storage.close();
+        }
+    }
+
+    /**
+     * Blocks every site again so the instance can run another trial without
+     * reallocating.
+     */
+    public void reset() {
+        storage.clearOpenSites();
+        uf.reset();
+        openSiteCount = 0;
+        percolates = false;
+    }
+
+    public void open(long row, long col) {
+        validateRowCol(row, col);
+        openSiteIndex(createSiteIndex(row, col));
+    }
+
+    /**
+     * Opens the site at the given zero-based, row-major index, i.e.
+     * {@code (row - 1) * cols + (col - 1)}. Returns {@code true} only for the
+     * open that makes the system percolate.
+     */
+    public boolean openSite(long siteIndex) {
+        if ((siteIndex < 0) || (siteIndex >= siteCount)) {
+            String message = String.format("Site index must be between 0 and %s",
+                    siteCount - 1);
+            throw new IllegalArgumentException(message);
+        }
+
+        return openSiteIndex(siteIndex);
+    }
+
+    private boolean openSiteIndex(long siteIndex) {
+        if (isSiteOpen(siteIndex)) {
+            return false;
+        }
+
+        openSiteCount++;
+        long word = siteIndex >>> 6;
+        storage.setOpenWord(word, storage.openWord(word) | (1L << siteIndex));
+
+        if (log != null) {
+            log.logOpen(siteIndex);
+        }
+
+        if (siteIndex < cols) {
+            uf.addFlags(siteIndex, CONNECTED_TOP);
+        } else {
+            connectOpenNeighbor(siteIndex, siteIndex - cols);
+        }
+
+        if (siteIndex >= (siteCount - cols)) {
+            uf.addFlags(siteIndex, CONNECTED_BOTTOM);
+        } else {
+            connectOpenNeighbor(siteIndex, siteIndex + cols);
+        }
+
+        long col = siteIndex % cols;
+
+        if (col > 0) {
+            connectOpenNeighbor(siteIndex, siteIndex - 1);
+        }
+
+        if (col < (cols - 1)) {
+            connectOpenNeighbor(siteIndex, siteIndex + 1);
+        }
+
+        if (percolates) {
+            return false;
+        }
+
+        percolates = (uf.flags(siteIndex) == CONNECTED_BOTH);
+        return percolates;
+    }
+
+    private void connectOpenNeighbor(long siteIndex, long neighborIndex) {
+        if (isSiteOpen(neighborIndex)) {
+            uf.union(siteIndex, neighborIndex);
+        }
+    }
+
+    public boolean isOpen(long row, long col) {
+        validateRowCol(row, col);
+        return isSiteOpen(createSiteIndex(row, col));
+    }
+
+    private boolean isSiteOpen(long siteIndex) {
+        return (storage.openWord(siteIndex >>> 6) & (1L << siteIndex)) != 0;
+    }
+
+    public boolean isFull(long row, long col) {
+        validateRowCol(row, col);
+        long siteIndex = createSiteIndex(row, col);
+        return (uf.flags(siteIndex) & CONNECTED_TOP) != 0;
+    }
+
+    public long numberOfOpenSites() {
+        return openSiteCount;
+    }
+
+    public long siteCount() {
+        return siteCount;
+    }
+
+    public boolean percolates() {
+        return percolates;
+    }
+
+    private long createSiteIndex(long row, long col) {
+        long base = (row - 1) * cols;
+        return (base + col) - 1;
+    }
+
+    private void validateRowCol(long row, long col) {
+        if ((row <= 0) || (row > this.rows)) {
+            String message = String.format("Row must be between 1 and %s",
+                    rows);
+            throw new IllegalArgumentException(message);
+        }
+        if ((col <= 0) || (col > this.cols)) {
+            String message = String.format("Columns must be between 1 and %s",
+                    cols);
+            throw new IllegalArgumentException(message);
+        }
+    }
+
+    /**
+     * Opens uniformly random blocked sites until the system percolates and
+     * returns the number of open sites. A permutation of every site would not
+     * fit, so already open sites are simply drawn again; near the threshold
+     * that costs about 2.5 draws per open. Every draw is uniform over the
+     * blocked sites whatever came before, so a resumed system can continue
+     * with any stream.
+     */
+    private static long runTrial(LongPercolation perc, SiteRandom random, boolean checkpoints) {
+        long siteCount = perc.siteCount;
+        long nextCheckpoint = perc.openSiteCount + CHECKPOINT_INTERVAL;
+
+        while (!perc.percolates) {
+            long siteIndex = nextSiteIndex(random, siteCount);
+            perc.openSiteIndex(siteIndex);
+
+            if (checkpoints && (perc.openSiteCount >= nextCheckpoint)) {
+                perc.checkpoint();
+                nextCheckpoint += CHECKPOINT_INTERVAL;
+            }
+        }
+
+        return perc.openSiteCount;
+    }
+
+    // java.util.Random's unbiased bounded draw, on 63 bits
+    private static long nextSiteIndex(SiteRandom random, long bound) {
+        long bits;
+        long value;
+
+        do {
+            bits = random.nextLong() >>> 1;
+            value = bits % bound;
+        } while (((bits - value) + (bound - 1)) < 0);
+
+        return value;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if ((args.length < 2) || (args.length > 4)) {
+            throw new IllegalArgumentException(
+                    "Expected rows, cols and optionally a seed and a storage file");
+        }
+
+        long rows = Long.parseLong(args[0]);
+        long cols = Long.parseLong(args[1]);
+        long seed = (args.length >= 3) ? Long.parseLong(args[2]) : System.nanoTime();
+
+        LongPercolation perc;
+        boolean checkpoints = (args.length == 4);
+
+        if (!checkpoints) {
+            perc = new LongPercolation(rows, cols);
+        } else {
+            Path path = Paths.get(args[3]);
+
+            if (Files.exists(path)) {
+                perc = resume(path);
+
+                if ((perc.rows != rows) || (perc.cols != cols)) {
+                    perc.close();
+                    String message = String.format("%s holds a %s by %s system",
+                            path, perc.rows, perc.cols);
+                    throw new IllegalArgumentException(message);
+                }
+            } else {
+                perc = create(path, rows, cols);
+            }
+        }
+
+        try {
+            // a resumed run starts a fresh stream rather than replay its draws
+            long streamSeed = SplitMix64Random.mix64(seed + perc.openSiteCount);
+            long openSiteCount = runTrial(perc, new Xoshiro256Random(streamSeed), checkpoints);
+
+            String message = String.format("sites                   = %d", perc.siteCount());
+            System.out.println(message);
+
+            message = String.format("open at percolation     = %d", openSiteCount);
+            System.out.println(message);
+
+            message = String.format("ratio                   = %f",
+                    openSiteCount / (double) perc.siteCount());
+            System.out.println(message);
+        } finally {
+            perc.close();
+        }
+    }
+
+}
@@ -0,0 +1,496 @@
+/******************************************************************************
+ *  Compilation:  javac OffHeapSiteStorage.java
+ *  Dependencies: SiteStorage.java
+ *
+ *  SiteStorage outside the Java heap, either in direct buffers or in a
+ *  memory-mapped file that can be checkpointed and reopened.
+ *
+ *    offset  size  field
+ *         0     4  magic "PST1"
+ *         4     4  1 while changed since the last checkpoint, else 0
+ *         8     8  number of sites
+ *        16    40  five state values owned by the caller
+ *        56     8  number of logged opens forced by the last checkpoint
+ *        64   8 n  parents, one's complement so zero is a root of size one
+ *             1 n  component flags, padded to 8 bytes
+ *        ((n + 63) / 64) * 8
+ *                  open bits, 64 sites per word
+ *           8 m    log of the m sites opened since the last clear, in
+ *                  order, mapped as it grows
+ *
+ *  All values are little-endian. Every region is split into buffers of at
+ *  most 1 GB, so there is no limit below 2^51 sites.
+ *
+ ******************************************************************************/
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Keeps multi-gigabyte grids out of the collector's way. {@link #close()}
+ * releases the memory or mapping immediately instead of waiting for the
+ * buffers to be collected; any later access fails with a
+ * {@code NullPointerException}.
+ * <p>
+ * A file-backed store is marked dirty, and the mark forced to disk, before
+ * the first change after a checkpoint, so {@link #isClean()} only holds for
+ * files whose contents match their last {@link #checkpoint()}. The regions
+ * are changed in place, so a dirty file may hold any mix of old and new
+ * pages; what survives a crash is the log of opened sites, which is only
+ * appended to and whose length is committed by each checkpoint. Replaying
+ * the logged opens on cleared storage, see {@link #rewind()}, rebuilds the
+ * state of the last checkpoint.
+ */
+public final class OffHeapSiteStorage
+        implements SiteStorage {
+
+    public static final int STATE_SLOTS = 5;
+
+    private static final int MAGIC = 0x31545350; // "PST1" read little-endian
+    private static final int HEADER_SIZE = 64;
+    private static final int DIRTY_OFFSET = 4;
+    private static final int SIZE_OFFSET = 8;
+    private static final int STATE_OFFSET = 16;
+    private static final int LOG_LENGTH_OFFSET = 56;
+
+    private static final int CHUNK_SHIFT = 30;
+    private static final long CHUNK_SIZE = 1L << CHUNK_SHIFT;
+    private static final long CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final byte[] ZEROS = new byte[1 << 16];
+
+    // sun.misc.Unsafe.invokeCleaner, null if the JDK does not offer it
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = field.get(null);
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // fall back to releasing the buffers on collection
+        }
+
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    private final long size;
+    private final FileChannel channel;
+    private boolean dirty;
+    private long logLength;
+
+    // null once closed
+    private ByteBuffer header;
+    private ByteBuffer[] parents;
+    private ByteBuffer[] flags;
+    private ByteBuffer[] openSites;
+    // mapped one chunk at a time as the log grows
+    private ByteBuffer[] log = new ByteBuffer[0];
+
+    private OffHeapSiteStorage(long size, FileChannel channel) throws IOException {
+        if (size < 0) {
+            throw new IllegalArgumentException("Size must not be negative");
+        }
+
+        if (size >= (1L << 51)) {
+            throw new IllegalArgumentException("Size must be below 2^51");
+        }
+
+        this.size = size;
+        this.channel = channel;
+
+        this.header = createRegion(0, HEADER_SIZE)[0];
+        this.parents = createRegion(HEADER_SIZE, size << 3);
+        this.flags = createRegion(flagsOffset(size), size);
+        this.openSites = createRegion(openSitesOffset(size), openSitesBytes(size));
+    }
+
+    private static long flagsOffset(long size) {
+        return HEADER_SIZE + (size << 3);
+    }
+
+    private static long openSitesOffset(long size) {
+        return flagsOffset(size) + ((size + 7) & ~7L);
+    }
+
+    private static long openSitesBytes(long size) {
+        return ((size + 63) >>> 6) << 3;
+    }
+
+    private static long logOffset(long size) {
+        return openSitesOffset(size) + openSitesBytes(size);
+    }
+
+    /**
+     * Allocates storage for {@code n} sites in direct buffers, counted
+     * against {@code -XX:MaxDirectMemorySize} rather than the heap.
+     */
+    public static OffHeapSiteStorage allocate(long n) {
+        try {
+            return new OffHeapSiteStorage(n, null);
+        } catch (IOException e) {
+            throw new IllegalStateException("Direct buffers do not do I/O", e);
+        }
+    }
+
+    /**
+     * Creates or truncates {@code path} and maps storage for {@code n} sites
+     * from it.
+     */
+    public static OffHeapSiteStorage create(Path path, long n) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+
+        try {
+            OffHeapSiteStorage storage = new OffHeapSiteStorage(n, channel);
+            storage.header.putInt(0, MAGIC);
+            storage.header.putLong(SIZE_OFFSET, n);
+            // extended file contents are unspecified, so clear explicitly
+            storage.clearComponents();
+            storage.clearOpenSites();
+            storage.checkpoint();
+            return storage;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Maps the storage previously created at {@code path}.
+     */
+    public static OffHeapSiteStorage open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+            while (header.hasRemaining() && (channel.read(header) >= 0)) {
+                // keep reading until the header is complete or the file ends
+            }
+
+            if (header.hasRemaining() || (header.getInt(0) != MAGIC)) {
+                throw new IllegalArgumentException(path + " is not a site storage file");
+            }
+
+            long size = header.getLong(SIZE_OFFSET);
+            long logLength = header.getLong(LOG_LENGTH_OFFSET);
+            boolean valid = (size >= 0) && (size < (1L << 51))
+                    && (logLength >= 0) && (logLength <= size)
+                    && (channel.size() >= (logOffset(size) + (logLength << 3)));
+
+            if (!valid) {
+                throw new IllegalArgumentException(path + " is truncated or has an invalid header");
+            }
+
+            OffHeapSiteStorage storage = new OffHeapSiteStorage(size, channel);
+            storage.dirty = (storage.header.getInt(DIRTY_OFFSET) != 0);
+            storage.logLength = logLength;
+            return storage;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private ByteBuffer[] createRegion(long offset, long length) throws IOException {
+        int chunks = (int) ((length + CHUNK_MASK) >>> CHUNK_SHIFT);
+        ByteBuffer[] result = new ByteBuffer[chunks];
+
+        for (int i = 0; i < chunks; i++) {
+            long start = (long) i << CHUNK_SHIFT;
+            int chunkLength = (int) Math.min(CHUNK_SIZE, length - start);
+
+            ByteBuffer chunk;
+            if (channel == null) {
+                chunk = ByteBuffer.allocateDirect(chunkLength);
+            } else {
+                chunk = channel.map(FileChannel.MapMode.READ_WRITE, offset + start, chunkLength);
+            }
+
+            result[i] = chunk.order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        return result;
+    }
+
+    public boolean isFileBacked() {
+        return channel != null;
+    }
+
+    /**
+     * Returns whether the file has not changed since its last checkpoint.
+     */
+    public boolean isClean() {
+        return !dirty;
+    }
+
+    public long state(int slot) {
+        return header.getLong(STATE_OFFSET + (slot << 3));
+    }
+
+    public void setState(int slot, long value) {
+        header.putLong(STATE_OFFSET + (slot << 3), value);
+    }
+
+    /**
+     * Returns the number of sites logged since the storage was last cleared.
+     * After {@link #open(Path)} of a dirty file that is the number committed
+     * by the last checkpoint.
+     */
+    public long loggedOpens() {
+        return logLength;
+    }
+
+    /**
+     * Returns the {@code index}-th logged site. The index is not validated.
+     */
+    public long loggedOpen(long index) {
+        long offset = index << 3;
+        return logChunk((int) (offset >>> CHUNK_SHIFT)).getLong((int) (offset & CHUNK_MASK));
+    }
+
+    /**
+     * Appends {@code site} to the log of opened sites. It becomes durable with
+     * the next {@link #checkpoint()}.
+     */
+    public void logOpen(long site) {
+        if (channel == null) {
+            throw new IllegalStateException("Direct storage has no file to log to");
+        }
+
+        long offset = logLength << 3;
+        logChunk((int) (offset >>> CHUNK_SHIFT)).putLong((int) (offset & CHUNK_MASK), site);
+        logLength++;
+    }
+
+    private ByteBuffer logChunk(int chunk) {
+        if (chunk >= log.length) {
+            ByteBuffer[] grown = new ByteBuffer[chunk + 1];
+            System.arraycopy(log, 0, grown, 0, log.length);
+            log = grown;
+        }
+
+        if (log[chunk] == null) {
+            long start = (long) chunk << CHUNK_SHIFT;
+            long length = Math.min(CHUNK_SIZE, (size << 3) - start);
+
+            try {
+                log[chunk] = channel.map(FileChannel.MapMode.READ_WRITE,
+                        logOffset(size) + start, length).order(ByteOrder.LITTLE_ENDIAN);
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not map the open log", e);
+            }
+        }
+
+        return log[chunk];
+    }
+
+    /**
+     * Clears the components and open bits but keeps the log, so the logged
+     * opens can be replayed through {@link #logOpen(long)} again. Until the
+     * next checkpoint the file keeps its dirty mark and committed log length,
+     * so a crash during the replay leaves it replayable.
+     */
+    public void rewind() {
+        if (!dirty) {
+            markDirty();
+        }
+
+        clear(parents);
+        clear(flags);
+        clear(openSites);
+        logLength = 0;
+    }
+
+    /**
+     * Forces every region and the log to disk, then commits the log length,
+     * marks the file clean and forces the header, so a crash leaves either
+     * the previous checkpoint marked dirty or this one marked clean.
+     */
+    public void checkpoint() {
+        if (channel == null) {
+            throw new IllegalStateException("Direct storage has no file to checkpoint");
+        }
+
+        force(parents);
+        force(flags);
+        force(openSites);
+        force(log);
+
+        header.putLong(LOG_LENGTH_OFFSET, logLength);
+        header.putInt(DIRTY_OFFSET, 0);
+        ((MappedByteBuffer) header).force();
+        dirty = false;
+    }
+
+    private static void force(ByteBuffer[] region) {
+        for (ByteBuffer chunk : region) {
+            if (chunk != null) {
+                ((MappedByteBuffer) chunk).force();
+            }
+        }
+    }
+
+    // open bits change first on every open, so they guard the parents too
+    private void markDirty() {
+        dirty = true;
+
+        if (channel != null) {
+            header.putInt(DIRTY_OFFSET, 1);
+            ((MappedByteBuffer) header).force();
+        }
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public long parent(long site) {
+        long offset = site << 3;
+        return ~parents[(int) (offset >>> CHUNK_SHIFT)].getLong((int) (offset & CHUNK_MASK));
+    }
+
+    @Override
+    public void setParent(long site, long value) {
+        long offset = site << 3;
+        parents[(int) (offset >>> CHUNK_SHIFT)].putLong((int) (offset & CHUNK_MASK), ~value);
+    }
+
+    @Override
+    public int flags(long site) {
+        return flags[(int) (site >>> CHUNK_SHIFT)].get((int) (site & CHUNK_MASK));
+    }
+
+    @Override
+    public void setFlags(long site, int value) {
+        flags[(int) (site >>> CHUNK_SHIFT)].put((int) (site & CHUNK_MASK), (byte) value);
+    }
+
+    @Override
+    public long openWord(long word) {
+        long offset = word << 3;
+        return openSites[(int) (offset >>> CHUNK_SHIFT)].getLong((int) (offset & CHUNK_MASK));
+    }
+
+    @Override
+    public void setOpenWord(long word, long bits) {
+        if (!dirty) {
+            markDirty();
+        }
+
+        long offset = word << 3;
+        openSites[(int) (offset >>> CHUNK_SHIFT)].putLong((int) (offset & CHUNK_MASK), bits);
+    }
+
+    @Override
+    public void clearComponents() {
+        if (!dirty) {
+            markDirty();
+        }
+
+        clear(parents);
+        clear(flags);
+    }
+
+    /**
+     * Also empties the log. The empty log is committed at once, before any
+     * new open can overwrite the entries the last checkpoint relies on.
+     */
+    @Override
+    public void clearOpenSites() {
+        if (!dirty) {
+            markDirty();
+        }
+
+        clear(openSites);
+        logLength = 0;
+
+        if (channel != null) {
+            header.putLong(LOG_LENGTH_OFFSET, 0);
+            ((MappedByteBuffer) header).force();
+        }
+    }
+
+    private static void clear(ByteBuffer[] region) {
+        for (ByteBuffer chunk : region) {
+            int limit = chunk.limit();
+
+            for (int i = 0; i < limit; i += ZEROS.length) {
+                chunk.put(i, ZEROS, 0, Math.min(ZEROS.length, limit - i));
+            }
+        }
+    }
+
+    /**
+     * Releases the memory or mapping and closes the file. This does not
+     * checkpoint, so a file closed with changes stays dirty.
+     */
+    @Override
+    public void close() {
+        if (header == null) {
+            return;
+        }
+
+        release(header);
+        release(parents);
+        release(flags);
+        release(openSites);
+        release(log);
+
+        header = null;
+        parents = null;
+        flags = null;
+        openSites = null;
+        log = null;
+
+        closeChannel();
+    }
+
+    private void closeChannel() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not close the storage file", e);
+            }
+        }
+    }
+
+    private static void release(ByteBuffer... region) {
+        if (INVOKE_CLEANER == null) {
+            return;
+        }
+
+        for (ByteBuffer chunk : region) {
+            if (chunk == null) {
+                continue;
+            }
+
+            try {
+                INVOKE_CLEANER.invoke(UNSAFE, chunk);
+            } catch (IllegalAccessException | InvocationTargetException e) {
+                // leave it to the collector
+            }
+        }
+    }
+
+}
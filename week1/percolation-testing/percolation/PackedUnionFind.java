@@ -0,0 +1,148 @@
+/******************************************************************************
+ *  Name:    Evan Zeimet
+ *  NetID:   podnov
+ *  Precept: P01
+ *
+ *  Partner Name:    N/A
+ *  Partner NetID:   N/A
+ *  Partner Precept: N/A
+ *
+ *  Description:  Weighted quick-union with path halving, packed into a
+ *                single int array.
+ ******************************************************************************/
+
+import java.util.Arrays;
+
+/**
+ * A non-negative entry is the parent of a site, a negative entry marks a root
+ * and holds the negated size of its component. Indices are not validated;
+ * callers are expected to stay within {@code [0, n)}.
+ * <p>
+ * Optionally every component carries a byte of flag bits, kept at its root and
+ * or-ed together on union, so callers can tag components without a second
+ * union-find.
+ * <p>
+ * Several threads may call {@link #find(int)} at once as long as no union runs
+ * concurrently: path halving only ever replaces a parent with one of its
+ * ancestors, so racing writes leave every path intact.
+ */
+public final class PackedUnionFind
+        implements UnionFind {
+
+    private final int[] parent;
+    private final byte[] flags;
+    private int count;
+
+    public PackedUnionFind(int n) {
+        this(n, false);
+    }
+
+    public PackedUnionFind(int n, boolean withFlags) {
+        if (n < 0) {
+            throw new IllegalArgumentException("Size must not be negative");
+        }
+
+        this.parent = new int[n];
+        this.flags = withFlags ? new byte[n] : null;
+
+        reset();
+    }
+
+    /**
+     * Puts every site back into its own component without reallocating.
+     */
+    @Override
+    public void reset() {
+        Arrays.fill(parent, -1);
+
+        if (flags != null) {
+            Arrays.fill(flags, (byte) 0);
+        }
+
+        count = parent.length;
+    }
+
+    public int count() {
+        return count;
+    }
+
+    @Override
+    public int find(int p) {
+        int[] parent = this.parent;
+        int next = parent[p];
+
+        while (next >= 0) {
+            int grandparent = parent[next];
+
+            if (grandparent < 0) {
+                return next;
+            }
+
+            parent[p] = grandparent;
+            p = grandparent;
+            next = parent[p];
+        }
+
+        return p;
+    }
+
+    @Override
+    public boolean connected(int p, int q) {
+        return find(p) == find(q);
+    }
+
+    @Override
+    public void union(int p, int q) {
+        int rootP = find(p);
+        int rootQ = find(q);
+
+        if (rootP == rootQ) {
+            return;
+        }
+
+        // roots hold negated sizes, so the smaller value is the larger tree
+        if (parent[rootP] <= parent[rootQ]) {
+            link(rootQ, rootP);
+        } else {
+            link(rootP, rootQ);
+        }
+
+        count--;
+    }
+
+    private void link(int child, int root) {
+        parent[root] += parent[child];
+        parent[child] = root;
+
+        if (flags != null) {
+            flags[root] |= flags[child];
+        }
+    }
+
+    /**
+     * Returns the number of sites in the component containing {@code p}.
+     */
+    public int size(int p) {
+        return -parent[find(p)];
+    }
+
+    /**
+     * Returns the flags of the component containing {@code p}.
+     */
+    @Override
+    public int flags(int p) {
+        return flags[find(p)];
+    }
+
+    /**
+     * Adds {@code bits} to the component containing {@code p} and returns the
+     * resulting flags of that component.
+     */
+    @Override
+    public int addFlags(int p, int bits) {
+        int root = find(p);
+        flags[root] |= (byte) bits;
+        return flags[root];
+    }
+
+}
@@ -11,125 +11,470 @@
  *                data structure.
  ******************************************************************************/
 
-import edu.princeton.cs.algs4.WeightedQuickUnionUF;
+import java.util.Arrays;
 
 public class Percolation {
 
-    private final int dimension;
+    private static final int CONNECTED_TOP = 1;
+    private static final int CONNECTED_BOTTOM = 2;
+    private static final int CONNECTED_BOTH = CONNECTED_TOP | CONNECTED_BOTTOM;
+
+    // rows and columns as given to the lattice
+    private final int rows;
+    private final int cols;
+    // rows seen by row/col access, layer after layer on the cubic lattice
+    private final int rowCount;
+    private final int siteCount;
+    // sites in the first and in the last row (layer)
+    private final int layerSize;
+    private final Lattice lattice;
+    private final boolean periodic;
+    // neighbor scratch space, null on the non-periodic square lattice
+    private final int[] neighborIndices;
     private int openSiteCount;
-    private boolean[][] openSites;
-    private final WeightedQuickUnionUF uf;
-    private final int virtualBottomSiteIndex;
-    private final int virtualTopSiteIndex;
+    private boolean percolates;
+    // one bit per site, row-major in the same order as the union-find indices
+    private final long[] openSites;
+    // components carry CONNECTED_TOP/CONNECTED_BOTTOM flags in every mode
+    private final UnionFind uf;
+    // same instance as uf with the packed engine, otherwise null
+    private final PackedUnionFind packedUf;
+    private final boolean backwashFree;
+    // cluster statistics, only maintained with the packed engine
+    private int largestClusterSize;
+    private int spanningClusterMass;
 
     public Percolation(int n) {
-        if (n <= 0) {
+        this(n, UnionFindType.WEIGHTED_QUICK_UNION);
+    }
+
+    public Percolation(int n, UnionFindType unionFindType) {
+        this(n, unionFindType, false);
+    }
+
+    /**
+     * Top and bottom connectivity are tracked as flag bits on the union-find
+     * roots rather than through virtual top and bottom sites, so detecting
+     * percolation is one flag check per open. By default
+     * {@link #isFull(int, int)} answers as the virtual sites would, backwash
+     * included: once the system percolates every site connected to the bottom
+     * row counts as full. With {@code backwashFree} set only sites connected
+     * to the top row are full. The cluster statistics are kept in either mode
+     * when the engine is {@link UnionFindType#PACKED}.
+     */
+    public Percolation(int n, UnionFindType unionFindType, boolean backwashFree) {
+        this(n, unionFindType, backwashFree, Lattice.SQUARE, false);
+    }
+
+    public Percolation(int n, UnionFindType unionFindType, boolean backwashFree,
+            Lattice lattice, boolean periodic) {
+        this(n, n, unionFindType, backwashFree, lattice, periodic);
+    }
+
+    /**
+     * A rows-by-cols system on the given lattice, with the columns wrapping
+     * around if {@code periodic} is set. The square lattice without wrapping
+     * keeps its unrolled open path, the others ask the lattice for neighbors.
+     * Row/col access sees the cubic lattice as rows * cols rows of cols
+     * sites, layer after layer. Systems of more than
+     * {@code Integer.MAX_VALUE - 2} sites need {@link LongPercolation}.
+     */
+    public Percolation(int rows, int cols, UnionFindType unionFindType, boolean backwashFree,
+            Lattice lattice, boolean periodic) {
+        if ((rows <= 0) || (cols <= 0)) {
             throw new IllegalArgumentException("Dimension must be greater than 0");
         }
 
-        int siteCount = n * n;
+        lattice.validate(rows, cols, periodic);
+
+        long sites = lattice.siteCount(rows, cols);
+        // the largest arrays the JVM reliably allocates
+        if (sites > (Integer.MAX_VALUE - 2)) {
+            String message = String.format("%s lattice of %s by %s has %s sites, at most %s fit",
+                    lattice, rows, cols, sites, Integer.MAX_VALUE - 2);
+            throw new IllegalArgumentException(message);
+        }
+
+        int siteCount = (int) sites;
+
+        this.rows = rows;
+        this.cols = cols;
+        this.rowCount = siteCount / cols;
+        this.siteCount = siteCount;
+        this.layerSize = (int) lattice.layerSize(cols);
+        this.lattice = lattice;
+        this.periodic = periodic;
 
-        this.dimension = n;
-        this.openSites = new boolean[dimension + 1][dimension + 1];
+        boolean plainSquare = (lattice == Lattice.SQUARE) && !periodic;
+        this.neighborIndices = plainSquare ? null : new int[Lattice.MAX_NEIGHBORS];
+
+        this.openSites = new long[(siteCount + 63) >>> 6];
         this.openSiteCount = 0;
-        this.uf = new WeightedQuickUnionUF(siteCount + 2);
-        this.virtualTopSiteIndex = createSiteIndex(dimension + 1, 1);
-        this.virtualBottomSiteIndex = createSiteIndex(dimension + 1, 2);
+
+        this.backwashFree = backwashFree;
+
+        if (unionFindType == UnionFindType.PACKED) {
+            this.packedUf = new PackedUnionFind(siteCount, true);
+            this.uf = packedUf;
+        } else {
+            this.packedUf = null;
+            this.uf = unionFindType.create(siteCount, true);
+        }
+    }
+
+    /**
+     * Blocks every site again so the instance can run another trial. Only the
+     * algs4 union-find engine allocates; the packed engine is cleared in place.
+     */
+    public void reset() {
+        Arrays.fill(openSites, 0L);
+        uf.reset();
+        openSiteCount = 0;
+        percolates = false;
+        largestClusterSize = 0;
+        spanningClusterMass = 0;
     }
 
     public void open(int row, int col) {
         validateRowCol(row, col);
+        int siteIndex = createSiteIndex(row, col);
+        openSiteIndex(siteIndex);
+    }
 
-        if (!openSites[col][row]) {
-            openSiteCount++;
-            openSites[col][row] = true;
+    /**
+     * Opens the site at the given zero-based, row-major index, i.e.
+     * {@code (row - 1) * n + (col - 1)}, without any row/col conversion.
+     * Returns {@code true} only for the open that makes the system percolate,
+     * so trial runners do not need to poll {@link #percolates()}.
+     */
+    public boolean openSite(int siteIndex) {
+        if ((siteIndex < 0) || (siteIndex >= siteCount)) {
+            String message = String.format("Site index must be between 0 and %s",
+                    siteCount - 1);
+            throw new IllegalArgumentException(message);
+        }
 
-            int siteIndex = createSiteIndex(row, col);
+        return openSiteIndex(siteIndex);
+    }
 
-            boolean topRow = row == 1;
-            if (topRow) {
-                uf.union(siteIndex, virtualTopSiteIndex);
-            } else {
-                int neighborRow = (row - 1);
-                connectOpenNeighbor(siteIndex, neighborRow, col);
-            }
+    /**
+     * Opens {@code siteIndices[from]} to {@code siteIndices[to - 1]}, given as
+     * in {@link #openSite(int)}, in order. The indices are validated in one
+     * pass up front and already open sites are skipped with a bit test.
+     * Returns the position in {@code siteIndices} of the open that made the
+     * system percolate, or -1 if none of them did.
+     */
+    public int openAll(int[] siteIndices, int from, int to) {
+        if ((from < 0) || (to > siteIndices.length) || (from > to)) {
+            String message = String.format("Range [%s, %s) is outside the %s indices",
+                    from, to, siteIndices.length);
+            throw new IllegalArgumentException(message);
+        }
 
-            boolean bottomRow = row == dimension;
-            if (bottomRow) {
-                uf.union(siteIndex, virtualBottomSiteIndex);
-            } else {
-                int neighborRow = (row + 1);
-                connectOpenNeighbor(siteIndex, neighborRow, col);
+        for (int i = from; i < to; i++) {
+            int siteIndex = siteIndices[i];
+
+            if ((siteIndex < 0) || (siteIndex >= siteCount)) {
+                String message = String.format("Site index must be between 0 and %s",
+                        siteCount - 1);
+                throw new IllegalArgumentException(message);
             }
+        }
+
+        int result = -1;
 
-            boolean hasWestNeighbor = (col > 1);
-            if (hasWestNeighbor) {
-                /**
-                 * <pre>
-                 *  |o
-                 * n|x o
-                 *  |o
-                 * </pre>
-                 */
-                int neighborCol = (col - 1);
-                connectOpenNeighbor(siteIndex, row, neighborCol);
+        for (int i = from; i < to; i++) {
+            if (openSiteIndex(siteIndices[i])) {
+                result = i;
             }
+        }
+
+        return result;
+    }
+
+    /**
+     * Opens every site whose bit is set in {@code sites}, laid out like the
+     * open-site store: bit {@code i & 63} of word {@code i >>> 6} is the site
+     * with index {@code i}. Sites are opened in increasing index order and
+     * only the bits not already open are visited. Returns whether the system
+     * percolates afterwards.
+     */
+    public boolean openAll(long[] sites) {
+        if (sites.length > openSites.length) {
+            String message = String.format("Expected at most %s words for %s sites",
+                    openSites.length, siteCount);
+            throw new IllegalArgumentException(message);
+        }
+
+        int tailBits = siteCount & 63;
+        boolean hasTail = (sites.length == openSites.length) && (tailBits != 0);
+        if (hasTail && ((sites[sites.length - 1] >>> tailBits) != 0)) {
+            throw new IllegalArgumentException("Bits set beyond the last site");
+        }
 
-            boolean hasEastNeighbor = (col < dimension);
-            if (hasEastNeighbor) {
-                /**
-                 * <pre>
-                 *   o|
-                 * o x|n
-                 *   o|
-                 * </pre>
-                 */
-                int neighborCol = (col + 1);
-                connectOpenNeighbor(siteIndex, row, neighborCol);
+        for (int word = 0; word < sites.length; word++) {
+            long pending = sites[word] & ~openSites[word];
+
+            while (pending != 0) {
+                int siteIndex = (word << 6) + Long.numberOfTrailingZeros(pending);
+                pending &= (pending - 1);
+                openSiteIndex(siteIndex);
             }
         }
+
+        return percolates;
+    }
+
+    private boolean openSiteIndex(int siteIndex) {
+        if (isSiteOpen(siteIndex)) {
+            return false;
+        }
+
+        openSiteCount++;
+        openSites[siteIndex >>> 6] |= (1L << siteIndex);
+
+        if (neighborIndices != null) {
+            connectLatticeNeighbors(siteIndex);
+        } else {
+            connectSquareNeighbors(siteIndex);
+        }
+
+        if (packedUf != null) {
+            return updateClusterStatistics(siteIndex);
+        }
+
+        if (percolates) {
+            return false;
+        }
+
+        // only the component of the opened site can have started to span
+        percolates = (uf.flags(siteIndex) == CONNECTED_BOTH);
+        return percolates;
     }
 
-    private void connectOpenNeighbor(int siteIndex, int neighborRow, int neighborCol) {
-        if (isOpen(neighborRow, neighborCol)) {
-            int neighborIndex = createSiteIndex(neighborRow, neighborCol);
+    private void connectSquareNeighbors(int siteIndex) {
+        boolean topRow = siteIndex < cols;
+        if (topRow) {
+            connectTop(siteIndex);
+        } else {
+            int neighborIndex = (siteIndex - cols);
+            connectOpenNeighbor(siteIndex, neighborIndex);
+        }
+
+        boolean bottomRow = siteIndex >= (siteCount - cols);
+        if (bottomRow) {
+            connectBottom(siteIndex);
+        } else {
+            int neighborIndex = (siteIndex + cols);
+            connectOpenNeighbor(siteIndex, neighborIndex);
+        }
+
+        int col = siteIndex % cols;
+
+        boolean hasWestNeighbor = (col > 0);
+        if (hasWestNeighbor) {
+            /**
+             * <pre>
+             *  |o
+             * n|x o
+             *  |o
+             * </pre>
+             */
+            int neighborIndex = (siteIndex - 1);
+            connectOpenNeighbor(siteIndex, neighborIndex);
+        }
+
+        boolean hasEastNeighbor = (col < (cols - 1));
+        if (hasEastNeighbor) {
+            /**
+             * <pre>
+             *   o|
+             * o x|n
+             *   o|
+             * </pre>
+             */
+            int neighborIndex = (siteIndex + 1);
+            connectOpenNeighbor(siteIndex, neighborIndex);
+        }
+    }
+
+    private void connectLatticeNeighbors(int siteIndex) {
+        if (siteIndex < layerSize) {
+            connectTop(siteIndex);
+        }
+
+        if (siteIndex >= (siteCount - layerSize)) {
+            connectBottom(siteIndex);
+        }
+
+        int[] neighborIndices = this.neighborIndices;
+        int count = lattice.neighbors(siteIndex, rows, cols, periodic, neighborIndices);
+
+        for (int i = 0; i < count; i++) {
+            connectOpenNeighbor(siteIndex, neighborIndices[i]);
+        }
+    }
+
+    /**
+     * Only the component of a freshly opened site can have grown, so checking
+     * its root after every open keeps the largest size and the spanning mass
+     * current without scanning the grid.
+     */
+    private boolean updateClusterStatistics(int siteIndex) {
+        int root = packedUf.find(siteIndex);
+        int size = packedUf.size(root);
+
+        if (size > largestClusterSize) {
+            largestClusterSize = size;
+        }
+
+        if (packedUf.flags(root) != CONNECTED_BOTH) {
+            return false;
+        }
+
+        // spanning neighbors merged into root were subtracted on union
+        spanningClusterMass += size;
+
+        if (percolates) {
+            return false;
+        }
+
+        percolates = true;
+        return true;
+    }
+
+    private void connectTop(int siteIndex) {
+        uf.addFlags(siteIndex, CONNECTED_TOP);
+    }
+
+    private void connectBottom(int siteIndex) {
+        uf.addFlags(siteIndex, CONNECTED_BOTTOM);
+    }
+
+    private void connectOpenNeighbor(int siteIndex, int neighborIndex) {
+        if (isSiteOpen(neighborIndex)) {
+            // no cluster spans before the system percolates
+            if (percolates && (packedUf != null)) {
+                removeSpanningMass(siteIndex, neighborIndex);
+            }
+
             uf.union(siteIndex, neighborIndex);
         }
     }
 
+    private void removeSpanningMass(int siteIndex, int neighborIndex) {
+        int neighborRoot = packedUf.find(neighborIndex);
+        boolean spanning = (packedUf.flags(neighborRoot) == CONNECTED_BOTH);
+
+        if (spanning && (neighborRoot != packedUf.find(siteIndex))) {
+            spanningClusterMass -= packedUf.size(neighborRoot);
+        }
+    }
+
     public boolean isOpen(int row, int col) {
         validateRowCol(row, col);
-        return openSites[col][row];
+        int siteIndex = createSiteIndex(row, col);
+        return isSiteOpen(siteIndex);
+    }
+
+    private boolean isSiteOpen(int siteIndex) {
+        return (openSites[siteIndex >>> 6] & (1L << siteIndex)) != 0;
     }
 
     public boolean isFull(int row, int col) {
         validateRowCol(row, col);
         int siteIndex = createSiteIndex(row, col);
-        return uf.connected(siteIndex, virtualTopSiteIndex);
+
+        int flags = uf.flags(siteIndex);
+
+        if ((flags & CONNECTED_TOP) != 0) {
+            return true;
+        }
+
+        // a virtual bottom site would join every bottom cluster to the top
+        return !backwashFree && percolates && ((flags & CONNECTED_BOTTOM) != 0);
     }
 
     public int numberOfOpenSites() {
         return openSiteCount;
     }
 
+    public int cols() {
+        return cols;
+    }
+
+    public int siteCount() {
+        return siteCount;
+    }
+
     public boolean percolates() {
-        return uf.connected(virtualTopSiteIndex, virtualBottomSiteIndex);
+        return percolates;
+    }
+
+    /**
+     * Returns the number of open clusters, i.e. maximal groups of open sites
+     * connected through open neighbors. Like the other cluster statistics this
+     * requires {@link UnionFindType#PACKED}; backwash does not change clusters.
+     */
+    public int numberOfOpenClusters() {
+        validateClusterStatistics();
+        // every blocked site is still a singleton
+        return packedUf.count() - (siteCount - openSiteCount);
+    }
+
+    /**
+     * Returns the number of sites in the largest open cluster.
+     */
+    public int largestClusterSize() {
+        validateClusterStatistics();
+        return largestClusterSize;
+    }
+
+    /**
+     * Returns the number of sites in clusters touching both the top and the
+     * bottom row, 0 while the system does not percolate.
+     */
+    public int spanningClusterMass() {
+        validateClusterStatistics();
+        return spanningClusterMass;
+    }
+
+    /**
+     * Returns the number of sites in the open cluster containing the given
+     * site, 0 if the site is blocked.
+     */
+    public int clusterSize(int row, int col) {
+        validateRowCol(row, col);
+        validateClusterStatistics();
+        int siteIndex = createSiteIndex(row, col);
+
+        if (!isSiteOpen(siteIndex)) {
+            return 0;
+        }
+
+        return packedUf.size(siteIndex);
+    }
+
+    private void validateClusterStatistics() {
+        if (packedUf == null) {
+            throw new IllegalStateException("Cluster statistics require the packed union-find");
+        }
     }
 
     private int createSiteIndex(int row, int col) {
-        int base = (row - 1) * dimension;
+        int base = (row - 1) * cols;
         return (base + col) - 1;
     }
 
     private void validateRowCol(int row, int col) {
-        if ((row <= 0) || (row > this.dimension)) {
+        if ((row <= 0) || (row > this.rowCount)) {
             String message = String.format("Row must be between 1 and %s",
-                    dimension);
+                    rowCount);
             throw new IllegalArgumentException(message);
         }
-        if ((col <= 0) || (col > this.dimension)) {
+        if ((col <= 0) || (col > this.cols)) {
             String message = String.format("Columns must be between 1 and %s",
-                    dimension);
+                    cols);
             throw new IllegalArgumentException(message);
         }
     }
@@ -151,6 +496,39 @@ public class Percolation {
         System.out.println(perc.uf.connected(p, q));
         perc.open(2, 1);
         System.out.println(perc.uf.connected(p, q));
+
+        // (3, 3) only touches the bottom, so it must not fill once (3, 1) percolates
+        Percolation backwash = new Percolation(3, UnionFindType.PACKED, true);
+        backwash.open(1, 1);
+        backwash.open(2, 1);
+        backwash.open(3, 3);
+        System.out.println(backwash.percolates());
+        backwash.open(3, 1);
+        System.out.println(backwash.percolates());
+        System.out.println(backwash.isFull(3, 1));
+        System.out.println(backwash.isFull(3, 3));
+
+        // clusters {(1,1), (2,1), (3,1)} and {(3,3)}
+        System.out.println(backwash.numberOfOpenClusters());
+        System.out.println(backwash.largestClusterSize());
+        System.out.println(backwash.spanningClusterMass());
+        System.out.println(backwash.clusterSize(3, 3));
+
+        // the same clusters with backwash, where (3, 3) reads as full
+        Percolation classic = new Percolation(3, UnionFindType.PACKED);
+        classic.open(1, 1);
+        classic.open(2, 1);
+        classic.open(3, 3);
+        classic.open(3, 1);
+        System.out.println(classic.isFull(3, 3));
+        System.out.println(classic.numberOfOpenClusters());
+        System.out.println(classic.spanningClusterMass());
+
+        // (1, 1) and (1, 3) touch once the columns wrap around
+        Percolation torus = new Percolation(3, UnionFindType.PACKED, true, Lattice.SQUARE, true);
+        torus.open(1, 1);
+        torus.open(1, 3);
+        System.out.println(torus.numberOfOpenClusters());
     }
 
 }
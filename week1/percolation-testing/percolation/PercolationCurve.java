@@ -0,0 +1,147 @@
+/******************************************************************************
+ *  Name:    Evan Zeimet
+ *  NetID:   podnov
+ *  Precept: P01
+ *
+ *  Partner Name:    N/A
+ *  Partner NetID:   N/A
+ *  Partner Precept: N/A
+ *
+ *  Description:  Spanning probability of an n-by-n percolation system as a
+ *                function of the number of open sites and of the site
+ *                vacancy probability p (Newman-Ziff).
+ ******************************************************************************/
+
+/**
+ * Built from the critical open count of each trial, i.e. the number of open
+ * sites at which the trial first percolated. One sweep per trial therefore
+ * gives the spanning indicator for every count {@code k}: it is 0 below the
+ * critical count and 1 from it on. The fixed-k probability Q(k) is the fraction
+ * of trials whose critical count is at most k, and P(p) follows by convolving
+ * Q with the binomial distribution of open sites.
+ */
+public class PercolationCurve {
+
+    // binomial weights below this fraction of the largest one are dropped
+    private static final double WEIGHT_CUTOFF = 1e-17;
+
+    private final int siteCount;
+    private final int trials;
+    // percolated[k] = number of trials that percolated with at most k open sites
+    private final int[] percolated;
+
+    public PercolationCurve(int siteCount, int[] criticalOpenCounts) {
+        if (siteCount <= 0) {
+            throw new IllegalArgumentException("Site count should be greater than 0");
+        }
+
+        if (criticalOpenCounts.length == 0) {
+            throw new IllegalArgumentException("At least one trial is required");
+        }
+
+        this.siteCount = siteCount;
+        this.trials = criticalOpenCounts.length;
+        this.percolated = new int[siteCount + 1];
+
+        for (int criticalOpenCount : criticalOpenCounts) {
+            if ((criticalOpenCount <= 0) || (criticalOpenCount > siteCount)) {
+                String message = String.format("Critical open count must be between 1 and %s",
+                        siteCount);
+                throw new IllegalArgumentException(message);
+            }
+
+            percolated[criticalOpenCount]++;
+        }
+
+        for (int k = 1; k <= siteCount; k++) {
+            percolated[k] += percolated[k - 1];
+        }
+    }
+
+    public int siteCount() {
+        return siteCount;
+    }
+
+    public int trials() {
+        return trials;
+    }
+
+    /**
+     * Q(k): probability that the system percolates with exactly
+     * {@code openSites} open sites.
+     */
+    public double probability(int openSites) {
+        if ((openSites < 0) || (openSites > siteCount)) {
+            String message = String.format("Open sites must be between 0 and %s", siteCount);
+            throw new IllegalArgumentException(message);
+        }
+
+        return percolated[openSites] / (double) trials;
+    }
+
+    /**
+     * P(p): probability that the system percolates when every site is open
+     * independently with probability {@code p}.
+     */
+    public double probability(double p) {
+        if (!(p >= 0) || (p > 1)) {
+            throw new IllegalArgumentException("p must be between 0 and 1");
+        }
+
+        if (p == 0) {
+            return probability(0);
+        }
+
+        if (p == 1) {
+            return probability(siteCount);
+        }
+
+        // walk out from the mode so the unnormalized weights never underflow
+        int mode = (int) Math.min(siteCount, Math.floor((siteCount + 1) * p));
+        double odds = p / (1 - p);
+
+        double weightSum = 1;
+        double sum = percolated[mode];
+
+        double weight = 1;
+        for (int k = mode; (k < siteCount) && (weight > WEIGHT_CUTOFF); k++) {
+            weight *= ((siteCount - k) / (double) (k + 1)) * odds;
+            weightSum += weight;
+            sum += weight * percolated[k + 1];
+        }
+
+        weight = 1;
+        for (int k = mode; (k > 0) && (weight > WEIGHT_CUTOFF); k--) {
+            weight *= (k / (double) (siteCount - k + 1)) / odds;
+            weightSum += weight;
+            sum += weight * percolated[k - 1];
+        }
+
+        return sum / (weightSum * trials);
+    }
+
+    public static void main(String[] args) {
+        if ((args.length < 2) || (args.length > 5)) {
+            throw new IllegalArgumentException(
+                    "Expected n, trials and optionally seed, threads and points");
+        }
+
+        int n = Integer.parseInt(args[0]);
+        int t = Integer.parseInt(args[1]);
+        long seed = (args.length >= 3) ? Long.parseLong(args[2]) : System.nanoTime();
+        int threads = (args.length >= 4)
+                ? Integer.parseInt(args[3])
+                : Runtime.getRuntime().availableProcessors();
+        int points = (args.length == 5) ? Integer.parseInt(args[4]) : 20;
+
+        PercolationStats stats = new PercolationStats(n, t, seed, threads);
+        PercolationCurve curve = stats.curve();
+
+        for (int i = 0; i <= points; i++) {
+            double p = 0.5 + ((0.2 * i) / points);
+            String message = String.format("P(%f) = %f", p, curve.probability(p));
+            System.out.println(message);
+        }
+    }
+
+}
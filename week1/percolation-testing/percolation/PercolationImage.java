@@ -0,0 +1,318 @@
+/******************************************************************************
+ *  Compilation:  javac PercolationImage.java
+ *  Execution:    java PercolationImage input.txt output.png [cellSize] [every]
+ *  Dependencies: Percolation.java SiteSequenceFile.java In.java
+ *
+ *  Headless rendering of a percolation system straight into the int[]
+ *  raster of a BufferedImage, with the same colors as PercolationVisualizer:
+ *  full sites in light blue, open sites in white and blocked sites in black.
+ *  Rows are rendered in parallel stripes, so no display and no StdDraw is
+ *  needed and grids far beyond what StdDraw can handle stay fast.
+ *
+ *  main reads a text or binary (SiteSequenceFile) input and writes the
+ *  final state as a PNG, framed like the bundled input*.png images and, at
+ *  the default cell size, 512 pixels square like them when it fits. With
+ *  a frame interval it instead writes one image every "every" opens, and
+ *  the output name is a String.format pattern such as frame-%05d.png.
+ *
+ ******************************************************************************/
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import javax.imageio.ImageIO;
+
+import edu.princeton.cs.algs4.In;
+
+public class PercolationImage {
+
+    // StdDraw.BOOK_LIGHT_BLUE, WHITE and BLACK
+    private static final int FULL_RGB = 0x67c6f3;
+    private static final int OPEN_RGB = 0xffffff;
+    private static final int BLOCKED_RGB = 0x000000;
+
+    // rows per forked stripe
+    private static final int STRIPE_ROWS = 64;
+
+    // cells this size or larger keep the visualizer's gap between cells
+    private static final int MIN_GAPPED_CELL_SIZE = 4;
+
+    // visualizer layout: a 5% border, with the status text in the bottom one
+    private static final double BORDER = 0.05;
+
+    /**
+     * Renders the n-by-n grid with {@code cellSize} pixels per site on
+     * {@code pool}, which callers keep for all the frames they render. Must
+     * not run concurrently with {@link Percolation#open(int, int)} on the
+     * same instance.
+     */
+    public static BufferedImage render(Percolation perc, int n, int cellSize, ForkJoinPool pool) {
+        long size = (long) n * cellSize;
+
+        if ((cellSize <= 0) || (size > Integer.MAX_VALUE) || ((size * size) > Integer.MAX_VALUE)) {
+            throw new IllegalArgumentException("Image would exceed the maximum raster size");
+        }
+
+        BufferedImage image = new BufferedImage((int) size, (int) size, BufferedImage.TYPE_INT_RGB);
+        int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+
+        pool.invoke(new StripeTask(perc, n, cellSize, pixels, 1, n + 1));
+        return image;
+    }
+
+    /**
+     * Renders the grid inside a white border with the status line below it,
+     * the layout of PercolationVisualizer and the bundled reference images.
+     */
+    public static BufferedImage renderFramed(Percolation perc, int n, int cellSize,
+            ForkJoinPool pool) {
+        return renderFramed(perc, n, cellSize, 0, pool);
+    }
+
+    /**
+     * Like {@link #renderFramed(Percolation, int, int, ForkJoinPool)}, but
+     * widens the border to center the grid in an image of at least
+     * {@code minSize} pixels square.
+     */
+    public static BufferedImage renderFramed(Percolation perc, int n, int cellSize, int minSize,
+            ForkJoinPool pool) {
+        BufferedImage grid = render(perc, n, cellSize, pool);
+        int gridSize = grid.getWidth();
+        int size = Math.max(minSize, gridSize + (2 * (int) Math.round(BORDER * gridSize)));
+        int border = (size - gridSize) / 2;
+        int bottomBorder = size - gridSize - border;
+
+        BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+
+        try {
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, size, size);
+            g.drawImage(grid, border, border, null);
+
+            g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING,
+                    RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            g.setFont(new Font("SansSerif", Font.PLAIN, Math.max(12, bottomBorder / 2)));
+            g.setColor(Color.BLACK);
+
+            String opened = perc.numberOfOpenSites() + " open sites";
+            String status = perc.percolates() ? "percolates" : "does not percolate";
+            int baseline = border + gridSize
+                    + ((bottomBorder + g.getFontMetrics().getAscent()) / 2);
+
+            drawCentered(g, opened, border + (0.25 * gridSize), baseline);
+            drawCentered(g, status, border + (0.75 * gridSize), baseline);
+        } finally {
+            g.dispose();
+        }
+
+        return image;
+    }
+
+    private static void drawCentered(Graphics2D g, String text, double x, int baseline) {
+        FontMetrics metrics = g.getFontMetrics();
+        g.drawString(text, (int) Math.round(x - (metrics.stringWidth(text) / 2.0)), baseline);
+    }
+
+    private static void renderRows(Percolation perc, int n, int cellSize, int[] pixels,
+            int fromRow, int toRow) {
+        int width = n * cellSize;
+        int gap = (cellSize >= MIN_GAPPED_CELL_SIZE) ? Math.max(1, cellSize / 20) : 0;
+
+        for (int row = fromRow; row < toRow; row++) {
+            int rowOffset = (row - 1) * cellSize * width;
+
+            // first pixel row of the cell row, copied down for the rest
+            for (int col = 1; col <= n; col++) {
+                int rgb = BLOCKED_RGB;
+
+                if (perc.isFull(row, col)) {
+                    rgb = FULL_RGB;
+                } else if (perc.isOpen(row, col)) {
+                    rgb = OPEN_RGB;
+                }
+
+                int start = rowOffset + ((col - 1) * cellSize);
+
+                for (int x = 0; x < cellSize; x++) {
+                    boolean inGap = (x < gap) || (x >= (cellSize - gap));
+                    pixels[start + x] = inGap ? BLOCKED_RGB : rgb;
+                }
+            }
+
+            for (int y = 1; y < cellSize; y++) {
+                int offset = rowOffset + (y * width);
+                boolean inGap = (y < gap) || (y >= (cellSize - gap));
+
+                if (inGap) {
+                    Arrays.fill(pixels, offset, offset + width, BLOCKED_RGB);
+                } else {
+                    System.arraycopy(pixels, rowOffset, pixels, offset, width);
+                }
+            }
+
+            if (gap > 0) {
+                Arrays.fill(pixels, rowOffset, rowOffset + (gap * width), BLOCKED_RGB);
+            }
+        }
+    }
+
+    private static class StripeTask
+            extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Percolation perc;
+        private final int n;
+        private final int cellSize;
+        private final int[] pixels;
+        private final int fromRow;
+        private final int toRow;
+
+        private StripeTask(Percolation perc, int n, int cellSize, int[] pixels,
+                int fromRow, int toRow) {
+            this.perc = perc;
+            this.n = n;
+            this.cellSize = cellSize;
+            this.pixels = pixels;
+            this.fromRow = fromRow;
+            this.toRow = toRow;
+        }
+
+        @Override
+        protected void compute() {
+            if ((toRow - fromRow) <= STRIPE_ROWS) {
+                renderRows(perc, n, cellSize, pixels, fromRow, toRow);
+            } else {
+                int middle = (fromRow + toRow) >>> 1;
+                invokeAll(new StripeTask(perc, n, cellSize, pixels, fromRow, middle),
+                        new StripeTask(perc, n, cellSize, pixels, middle, toRow));
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if ((args.length < 2) || (args.length > 4)) {
+            throw new IllegalArgumentException(
+                    "Expected input, output.png and optionally cellSize and every");
+        }
+
+        System.setProperty("java.awt.headless", "true");
+
+        String output = args[1];
+        int cellSize = (args.length >= 3) ? Integer.parseInt(args[2]) : 0;
+        int every = (args.length == 4) ? Integer.parseInt(args[3]) : 0;
+        int threads = Runtime.getRuntime().availableProcessors();
+
+        // text input may also be a URL or classpath resource, as In allows
+        if (SiteSequenceFile.isSiteSequenceFile(args[0])) {
+            try (SiteSequenceFile sites = new SiteSequenceFile(Paths.get(args[0]));
+                    Exporter exporter = new Exporter(sites.dimension(), cellSize, every,
+                            threads, output)) {
+                int n = sites.dimension();
+
+                while (sites.hasNext()) {
+                    int site = sites.next();
+                    exporter.opened((site / n) + 1, (site % n) + 1);
+                }
+
+                exporter.finish();
+            }
+        } else {
+            In in = new In(args[0]);
+            int n = in.readInt();
+
+            try (Exporter exporter = new Exporter(n, cellSize, every, threads, output)) {
+                while (!in.isEmpty()) {
+                    int row = in.readInt();
+                    int col = in.readInt();
+                    exporter.opened(row, col);
+                }
+
+                exporter.finish();
+            }
+        }
+    }
+
+    /**
+     * Replays opens into a backwash-free Percolation and writes the final
+     * image or every {@code every}-th frame, all rendered on one pool that
+     * {@link #close()} shuts down.
+     */
+    private static class Exporter
+            implements AutoCloseable {
+
+        // side of the bundled reference images, grid and border included
+        private static final int REFERENCE_SIZE = 512;
+
+        private final Percolation perc;
+        private final int n;
+        private final int cellSize;
+        // REFERENCE_SIZE at the default cell size, otherwise no minimum
+        private final int minSize;
+        private final int every;
+        private final ForkJoinPool pool;
+        private final String output;
+        private int opened;
+        private int frame;
+
+        private Exporter(int n, int cellSize, int every, int threads, String output) {
+            this.perc = new Percolation(n, UnionFindType.PACKED, true);
+            this.n = n;
+
+            if (cellSize > 0) {
+                this.cellSize = cellSize;
+                this.minSize = 0;
+            } else {
+                // the largest cells whose grid and 5% borders fit the reference
+                this.cellSize = Math.max(1, (int) (REFERENCE_SIZE / ((1 + (2 * BORDER)) * n)));
+                this.minSize = REFERENCE_SIZE;
+            }
+
+            this.every = every;
+            this.pool = new ForkJoinPool(threads);
+            this.output = output;
+        }
+
+        private void opened(int row, int col) throws IOException {
+            perc.open(row, col);
+            opened++;
+
+            if ((every > 0) && ((opened % every) == 0)) {
+                write(String.format(output, frame++));
+            }
+        }
+
+        private void finish() throws IOException {
+            if (every > 0) {
+                if ((opened % every) != 0) {
+                    write(String.format(output, frame));
+                }
+            } else {
+                write(output);
+            }
+        }
+
+        private void write(String file) throws IOException {
+            BufferedImage image = renderFramed(perc, n, cellSize, minSize, pool);
+            ImageIO.write(image, "png", new File(file));
+        }
+
+        @Override
+        public void close() {
+            pool.shutdown();
+        }
+    }
+
+}
@@ -0,0 +1,208 @@
+/******************************************************************************
+ *  Compilation:  javac PercolationRenderer.java
+ *  Dependencies: Percolation.java StdDraw.java
+ *
+ *  Incremental version of PercolationVisualizer.draw(). The whole grid is
+ *  drawn once; after that only the cells whose state changed since the
+ *  last update are redrawn:
+ *
+ *    - the opened site itself, in white if it is open but not full
+ *    - if it is full, every open cell of its component that was not drawn
+ *      full yet, found by a flood fill from the opened site
+ *
+ *  A cell turns full at most once, so replaying a whole input costs
+ *  O(n^2) cell updates instead of O(n^2) per open.
+ *
+ ******************************************************************************/
+
+import java.awt.Font;
+
+import edu.princeton.cs.algs4.StdDraw;
+
+public class PercolationRenderer {
+
+    private static final byte BLOCKED = 0;
+    private static final byte OPEN = 1;
+    private static final byte FULL = 2;
+
+    private static final Font STATUS_FONT = new Font("SansSerif", Font.PLAIN, 12);
+
+    private final Percolation perc;
+    private final int n;
+    // state each cell was last drawn in, row-major
+    private final byte[] drawn;
+    // flood fill work queue, reused between updates
+    private final int[] queue;
+    private boolean percolates;
+
+    public PercolationRenderer(Percolation perc, int n) {
+        this.perc = perc;
+        this.n = n;
+        this.drawn = new byte[n * n];
+        this.queue = new int[n * n];
+
+        drawAll();
+    }
+
+    /**
+     * Draws every cell of {@code perc} once, without keeping any state for
+     * later updates.
+     */
+    public static void draw(Percolation perc, int n) {
+        drawBackground(n);
+
+        for (int row = 1; row <= n; row++) {
+            for (int col = 1; col <= n; col++) {
+                paintCell(n, row, col, state(perc, row, col));
+            }
+        }
+
+        drawStatus(perc, n);
+    }
+
+    /**
+     * Redraws every cell, e.g. after the window was cleared.
+     */
+    public void drawAll() {
+        drawBackground(n);
+
+        for (int row = 1; row <= n; row++) {
+            for (int col = 1; col <= n; col++) {
+                drawCell(row, col, state(perc, row, col));
+            }
+        }
+
+        percolates = perc.percolates();
+        drawStatus();
+    }
+
+    private static void drawBackground(int n) {
+        StdDraw.clear();
+        StdDraw.setPenColor(StdDraw.BLACK);
+        StdDraw.setXscale(-0.05*n, 1.05*n);
+        StdDraw.setYscale(-0.05*n, 1.05*n);   // leave a border to write text
+        StdDraw.filledSquare(n/2.0, n/2.0, n/2.0);
+    }
+
+    private static byte state(Percolation perc, int row, int col) {
+        if (perc.isFull(row, col)) {
+            return FULL;
+        }
+
+        return perc.isOpen(row, col) ? OPEN : BLOCKED;
+    }
+
+    /**
+     * Redraws the cells affected by opening (row, col) and the status line.
+     */
+    public void siteOpened(int row, int col) {
+        int cell = ((row - 1) * n) + (col - 1);
+
+        if (perc.isFull(row, col)) {
+            if (drawn[cell] != FULL) {
+                fillComponent(cell);
+            }
+        } else if (perc.isOpen(row, col) && (drawn[cell] == BLOCKED)) {
+            drawCell(row, col, OPEN);
+        }
+
+        if (!percolates && perc.percolates()) {
+            percolates = true;
+            fillBackwash();
+        }
+
+        drawStatus();
+    }
+
+    /**
+     * Without backwash-free mode every component touching the bottom row
+     * reads as full once the system percolates, even if the flood fill from
+     * the opened site cannot reach it.
+     */
+    private void fillBackwash() {
+        for (int col = 1; col <= n; col++) {
+            int cell = ((n - 1) * n) + (col - 1);
+
+            if ((drawn[cell] != FULL) && perc.isFull(n, col)) {
+                fillComponent(cell);
+            }
+        }
+    }
+
+    private void fillComponent(int start) {
+        int head = 0;
+        int tail = 0;
+
+        queue[tail++] = start;
+        markFull(start);
+
+        while (head < tail) {
+            int cell = queue[head++];
+            int row = cell / n;
+            int col = cell % n;
+
+            if (row > 0) {
+                tail = visit(cell - n, tail);
+            }
+            if (row < (n - 1)) {
+                tail = visit(cell + n, tail);
+            }
+            if (col > 0) {
+                tail = visit(cell - 1, tail);
+            }
+            if (col < (n - 1)) {
+                tail = visit(cell + 1, tail);
+            }
+        }
+    }
+
+    private int visit(int cell, int tail) {
+        boolean open = (drawn[cell] == OPEN)
+                || ((drawn[cell] == BLOCKED) && perc.isOpen((cell / n) + 1, (cell % n) + 1));
+
+        if (open) {
+            queue[tail++] = cell;
+            markFull(cell);
+        }
+
+        return tail;
+    }
+
+    private void markFull(int cell) {
+        drawCell((cell / n) + 1, (cell % n) + 1, FULL);
+    }
+
+    private void drawCell(int row, int col, byte state) {
+        drawn[((row - 1) * n) + (col - 1)] = state;
+        paintCell(n, row, col, state);
+    }
+
+    private static void paintCell(int n, int row, int col, byte state) {
+        if (state == FULL) {
+            StdDraw.setPenColor(StdDraw.BOOK_LIGHT_BLUE);
+        } else if (state == OPEN) {
+            StdDraw.setPenColor(StdDraw.WHITE);
+        } else {
+            StdDraw.setPenColor(StdDraw.BLACK);
+        }
+
+        StdDraw.filledSquare(col - 0.5, n - row + 0.5, 0.45);
+    }
+
+    private void drawStatus() {
+        drawStatus(perc, n);
+    }
+
+    private static void drawStatus(Percolation perc, int n) {
+        // blank the border strip below the grid before writing new text
+        StdDraw.setPenColor(StdDraw.WHITE);
+        StdDraw.filledRectangle(0.5*n, -0.025*n, 0.55*n, 0.025*n);
+
+        StdDraw.setFont(STATUS_FONT);
+        StdDraw.setPenColor(StdDraw.BLACK);
+        StdDraw.text(0.25*n, -0.025*n, perc.numberOfOpenSites() + " open sites");
+        if (perc.percolates()) StdDraw.text(0.75*n, -0.025*n, "percolates");
+        else                   StdDraw.text(0.75*n, -0.025*n, "does not percolate");
+    }
+
+}
@@ -11,37 +11,159 @@
  *                data structure.
  ******************************************************************************/
 
+import java.io.IOException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
 import edu.princeton.cs.algs4.StdRandom;
 import edu.princeton.cs.algs4.StdStats;
 
 public class PercolationStats {
 
+    // forked tasks per worker thread, leaves room for work stealing
+    private static final int TASKS_PER_THREAD = 8;
+
+    // trials always run before an adaptive run may stop on its interval width
+    private static final int MIN_ADAPTIVE_TRIALS = 30;
+
+    private final int siteCount;
+    // per-trial results, null for streaming runs
+    private final double[] openSiteRatios;
+    private final int trials;
     private final double mean;
     private final double stddev;
     private final double confidenceLo;
     private final double confidenceHi;
 
     public PercolationStats(int n, int trials) {
-        if (n <= 0) {
-            throw new IllegalArgumentException("Dimension should be greater than 0");
-        }
+        this((int) Lattice.SQUARE.siteCount(n), runTrials(n, trials));
+    }
 
-        if (trials  <= 0) {
-            throw new IllegalArgumentException("Trials should be greater than 0");
-        }
+    /**
+     * Runs the trials on {@code threads} fork-join workers. Every trial draws
+     * from its own RNG stream derived from {@code seed} and the trial number,
+     * so the results for a given seed do not depend on the thread count.
+     */
+    public PercolationStats(int n, int trials, long seed, int threads) {
+        this(n, trials, seed, threads, Lattice.SQUARE, false);
+    }
+
+    /**
+     * Seeded trials on the given lattice, with the columns wrapping around if
+     * {@code periodic} is set. Ratios are open sites over all sites of the
+     * lattice.
+     */
+    public PercolationStats(int n, int trials, long seed, int threads,
+            Lattice lattice, boolean periodic) {
+        this(n, n, trials, seed, threads, lattice, periodic);
+    }
+
+    /**
+     * Seeded trials on a rows-by-cols system, see
+     * {@link Percolation#Percolation(int, int, UnionFindType, boolean, Lattice, boolean)}.
+     */
+    public PercolationStats(int rows, int cols, int trials, long seed, int threads,
+            Lattice lattice, boolean periodic) {
+        this((int) lattice.siteCount(rows, cols),
+                runTrials(rows, cols, trials, seed, threads, lattice, periodic));
+    }
+
+    /**
+     * Streams trials until the 95% confidence interval half-width is at most
+     * {@code targetHalfWidth} (after at least 30 trials) or {@code maxTrials}
+     * trials have run. Running statistics are kept with Welford's algorithm and
+     * passed to {@code listener}, if given, after every trial. Trials run in
+     * batches on the same engine as the fixed-count constructor, but the
+     * stopping point is decided trial by trial in trial order, so it does not
+     * depend on the thread count either.
+     */
+    public PercolationStats(int n, double targetHalfWidth, int maxTrials, long seed,
+            int threads, TrialStatisticsListener listener) {
+        this(n, targetHalfWidth, maxTrials, seed, threads, listener, Lattice.SQUARE, false);
+    }
+
+    public PercolationStats(int n, double targetHalfWidth, int maxTrials, long seed,
+            int threads, TrialStatisticsListener listener, Lattice lattice, boolean periodic) {
+        this((int) lattice.siteCount(n), runAdaptiveTrials(n, n, targetHalfWidth, maxTrials,
+                seed, threads, listener, lattice, periodic));
+    }
+
+    /**
+     * Runs the campaign recorded in {@code journal} from its last checkpoint
+     * to the end, appending a checkpoint after every batch of trials. Trials
+     * are seeded and batched as in the adaptive constructor, so a campaign
+     * that was interrupted and resumed, possibly with a different thread
+     * count, ends with the same results as one that was not. Per-trial
+     * results, and with them {@link #curve()}, are only available if the
+     * journal keeps them; the mean and stddev are then computed from them as
+     * in the fixed-count constructor, so a fixed-count campaign matches
+     * {@link #PercolationStats(int, int, int, long, int, Lattice, boolean)}
+     * with the same seed to the last bit.
+     */
+    public PercolationStats(TrialJournal journal, int threads) throws IOException {
+        this((int) journal.lattice().siteCount(journal.rows(), journal.cols()),
+                runJournaledTrials(journal, threads),
+                journal.ratios());
+    }
+
+    // openSiteRatios is null if the journal does not keep them
+    private PercolationStats(int siteCount, TrialStatistics statistics, double[] openSiteRatios) {
+        this(siteCount, openSiteRatios, statistics.count(),
+                (openSiteRatios != null) ? StdStats.mean(openSiteRatios) : statistics.mean(),
+                (openSiteRatios != null) ? StdStats.stddev(openSiteRatios) : statistics.stddev());
+    }
+
+    private PercolationStats(int siteCount, double[] openSiteRatios) {
+        this(siteCount, openSiteRatios, openSiteRatios.length,
+                StdStats.mean(openSiteRatios),
+                StdStats.stddev(openSiteRatios));
+    }
 
-        double[] openSiteRatios = runTrials(n, trials);
+    private PercolationStats(int siteCount, TrialStatistics statistics) {
+        this(siteCount, null, statistics.count(), statistics.mean(), statistics.stddev());
+    }
 
-        this.mean = StdStats.mean(openSiteRatios);
-        this.stddev = StdStats.stddev(openSiteRatios);
+    private PercolationStats(int siteCount, double[] openSiteRatios, int trials,
+            double mean, double stddev) {
+        this.siteCount = siteCount;
+        this.openSiteRatios = openSiteRatios;
+        this.trials = trials;
+        this.mean = mean;
+        this.stddev = stddev;
 
         double trailsSqrt = Math.sqrt(trials);
-        double confidenceVariance = ((1.96 * stddev)  / trailsSqrt);
+        double confidenceVariance = ((TrialStatistics.CONFIDENCE_95 * stddev)  / trailsSqrt);
 
         this.confidenceLo = mean - confidenceVariance;
         this.confidenceHi = mean + confidenceVariance;
     }
 
+    public int trials() {
+        return this.trials;
+    }
+
+    /**
+     * Spanning probability curve built from the critical open count of every
+     * trial. Not available for streaming runs, which do not keep per-trial
+     * results.
+     */
+    public PercolationCurve curve() {
+        if (openSiteRatios == null) {
+            throw new IllegalStateException("Streaming runs do not keep per-trial results");
+        }
+
+        int[] criticalOpenCounts = new int[trials];
+
+        for (int i = 0; i < trials; i++) {
+            criticalOpenCounts[i] = (int) Math.round(openSiteRatios[i] * siteCount);
+        }
+
+        return new PercolationCurve(siteCount, criticalOpenCounts);
+    }
+
     public double mean() {
         return this.mean;
     }
@@ -58,31 +180,184 @@ public class PercolationStats {
         return this.confidenceHi;
     }
 
-    private double[] runTrials(int n, int trials) {
+    private static void validateArguments(int n, int trials) {
+        validateArguments(n, n, trials);
+    }
+
+    private static void validateArguments(int rows, int cols, int trials) {
+        if ((rows <= 0) || (cols <= 0)) {
+            throw new IllegalArgumentException("Dimension should be greater than 0");
+        }
+
+        if (trials  <= 0) {
+            throw new IllegalArgumentException("Trials should be greater than 0");
+        }
+    }
+
+    private static double[] runTrials(int n, int trials) {
+        validateArguments(n, trials);
         double[] result = new double[trials];
 
+        Percolation perc = new Percolation(n);
+        int[] siteIndices = new int[n * n];
+
         for (int i = 0; i < trials; i++) {
-            double openSiteRatio = runTrial(n);
+            perc.reset();
+            fillRandomSiteIndicies(siteIndices);
+            double openSiteRatio = runTrial(perc, siteIndices);
             result[i] = openSiteRatio;
         }
 
         return result;
     }
 
-    private double runTrial(int n) {
+    private static double[] runTrials(int rows, int cols, int trials, long seed, int threads,
+            Lattice lattice, boolean periodic) {
+        validateArguments(rows, cols, trials);
+        validateThreads(threads);
+
+        double[] result = new double[trials];
+
+        try (TrialEngine engine = new TrialEngine(rows, cols, lattice, periodic, seed, threads)) {
+            engine.run(result, 0, trials);
+        }
+
+        return result;
+    }
+
+    private static TrialStatistics runAdaptiveTrials(int rows, int cols, double targetHalfWidth,
+            int maxTrials, long seed, int threads, TrialStatisticsListener listener,
+            Lattice lattice, boolean periodic) {
+        validateArguments(rows, cols, maxTrials);
+        validateThreads(threads);
+
+        if (!(targetHalfWidth > 0)) {
+            throw new IllegalArgumentException("Target half-width should be greater than 0");
+        }
+
+        TrialStatistics result = new TrialStatistics();
+        double[] batch = new double[threads * TASKS_PER_THREAD];
+
+        try (TrialEngine engine = new TrialEngine(rows, cols, lattice, periodic, seed, threads)) {
+            while (result.count() < maxTrials) {
+                int firstTrial = result.count();
+                int batchSize = Math.min(batch.length, maxTrials - firstTrial);
+                engine.run(batch, firstTrial, batchSize);
+
+                for (int i = 0; i < batchSize; i++) {
+                    result.add(batch[i]);
+
+                    if (listener != null) {
+                        listener.trialCompleted(result);
+                    }
+
+                    boolean converged = (result.count() >= MIN_ADAPTIVE_TRIALS)
+                            && (result.halfWidth() <= targetHalfWidth);
+                    if (converged) {
+                        return result;
+                    }
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Starts the seeded trials of one rows-by-cols configuration on
+     * {@code pool} without waiting for them. Any number of configurations can
+     * share the pool, whose idle workers steal trials from whichever is
+     * still running. The results equal those of
+     * {@link #PercolationStats(int, int, int, long, int, Lattice, boolean)}
+     * with the same seed.
+     */
+    static ForkJoinTask<PercolationStats> submit(ForkJoinPool pool, int rows, int cols,
+            Lattice lattice, boolean periodic, int trials, long seed) {
+        validateArguments(rows, cols, trials);
+        lattice.validate(rows, cols, periodic);
+
+        if (lattice.siteCount(rows, cols) > (Integer.MAX_VALUE - 2)) {
+            throw new IllegalArgumentException("Too many sites for PercolationStats");
+        }
+
+        return pool.submit(new RunTask(pool, rows, cols, lattice, periodic, trials, seed));
+    }
+
+    private static TrialStatistics runJournaledTrials(TrialJournal journal, int threads)
+            throws IOException {
+        validateThreads(threads);
+
+        TrialStatistics result = journal.statistics();
+        double targetHalfWidth = journal.targetHalfWidth();
+        int maxTrials = journal.maxTrials();
+        double[] batch = new double[threads * TASKS_PER_THREAD];
+
+        try (TrialEngine engine = new TrialEngine(journal.rows(), journal.cols(),
+                journal.lattice(), journal.periodic(), journal.seed(), threads)) {
+            while (!isComplete(result, targetHalfWidth, maxTrials)) {
+                int firstTrial = result.count();
+                int batchSize = Math.min(batch.length, maxTrials - firstTrial);
+                engine.run(batch, firstTrial, batchSize);
+
+                int added = 0;
+
+                while ((added < batchSize) && !isComplete(result, targetHalfWidth, maxTrials)) {
+                    result.add(batch[added++]);
+                }
+
+                journal.append(result, batch, added);
+            }
+        }
+
+        journal.sync();
+        return result;
+    }
+
+    private static boolean isComplete(TrialStatistics statistics, double targetHalfWidth,
+            int maxTrials) {
+        boolean converged = (targetHalfWidth > 0)
+                && (statistics.count() >= MIN_ADAPTIVE_TRIALS)
+                && (statistics.halfWidth() <= targetHalfWidth);
+
+        return converged || (statistics.count() >= maxTrials);
+    }
+
+    private static void validateThreads(int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Threads should be greater than 0");
+        }
+    }
+
+    /**
+     * Runs trials {@code firstTrial + from} to {@code firstTrial + to - 1} and
+     * stores their ratios at {@code result[from]} to {@code result[to - 1]}.
+     */
+    private static void runSeededTrials(TrialWorker worker, long seed, int firstTrial,
+            double[] result, int from, int to) {
+        for (int i = from; i < to; i++) {
+            long trialSeed = createTrialSeed(seed, firstTrial + i);
+            result[i] = worker.runTrial(trialSeed);
+        }
+    }
+
+    /**
+     * Returns the seed of the given trial's RNG stream. This is the
+     * (trial + 1)th value of {@code new SplitMix64Random(seed).nextLong()},
+     * computed directly so any worker can derive any trial's stream.
+     */
+    private static long createTrialSeed(long seed, int trial) {
+        return SplitMix64Random.mix64(seed + ((trial + 1) * SplitMix64Random.GOLDEN_GAMMA));
+    }
+
+    private static double runTrial(Percolation perc, int[] siteIndices) {
         int openSiteCount = -1;
-        Percolation perc = new Percolation(n);
 
-        int siteCount = n*n;
-        int[] siteIndices = createRandomSiteIndicies(siteCount);
+        int siteCount = siteIndices.length;
 
         for (int i = 0; i < siteCount; i++) {
             int siteIndex = siteIndices[i];
-            int row = (siteIndex / n) + 1;
-            int col = (siteIndex % n) + 1;
-            perc.open(row, col);
 
-            if (perc.percolates()) {
+            if (perc.openSite(siteIndex)) {
                 openSiteCount = i + 1;
                 break;
             }
@@ -91,27 +366,258 @@ public class PercolationStats {
         return openSiteCount / (double) siteCount;
     }
 
-    private int[] createRandomSiteIndicies(int siteCount) {
-        int[] result = new int[siteCount];
+    private static void fillRandomSiteIndicies(int[] siteIndices) {
+        for (int i = 0; i < siteIndices.length; i++) {
+            siteIndices[i] = i;
+        }
 
-        for (int i = 0; i < siteCount; i++) {
-            result[i] = i;
+        StdRandom.shuffle(siteIndices);
+    }
+
+    /**
+     * Inside-out Fisher-Yates: fills and shuffles in one pass. Drawing lazily
+     * from a SitePermutation saves the draws after the percolating open but
+     * measured no faster for whole trials, since its scattered reads then
+     * compete with the union-find's own (see percolation.trial benchmarks).
+     */
+    private static void fillRandomSiteIndicies(int[] siteIndices, SiteRandom random) {
+        for (int i = 0; i < siteIndices.length; i++) {
+            int j = random.nextInt(i + 1);
+            siteIndices[i] = siteIndices[j];
+            siteIndices[j] = i;
         }
+    }
 
-        StdRandom.shuffle(result);
+    /**
+     * Per-thread trial state: the grid, RNG and permutation buffer are
+     * allocated once and reused for every trial the worker runs.
+     */
+    private static class TrialWorker {
 
-        return result;
+        private final Percolation perc;
+        private final SiteRandom random;
+        private final int[] siteIndices;
+
+        private TrialWorker(int rows, int cols, Lattice lattice, boolean periodic) {
+            this.perc = new Percolation(rows, cols, UnionFindType.PACKED, true, lattice, periodic);
+            this.random = new Xoshiro256Random(0);
+            this.siteIndices = new int[(int) lattice.siteCount(rows, cols)];
+        }
+
+        private double runTrial(long trialSeed) {
+            perc.reset();
+            random.setSeed(trialSeed);
+            fillRandomSiteIndicies(siteIndices, random);
+            return PercolationStats.runTrial(perc, siteIndices);
+        }
+    }
+
+    /**
+     * Runs seeded trials either on the calling thread or on a fork-join pool
+     * that lives until {@link #close()}. Pool tasks borrow reusable workers
+     * from the engine, so there are never more workers than threads running
+     * its trials, and they are collected with the engine rather than kept by
+     * the pool threads once another configuration has the pool.
+     */
+    private static class TrialEngine
+            implements AutoCloseable {
+
+        private final int rows;
+        private final int cols;
+        private final Lattice lattice;
+        private final boolean periodic;
+        private final long seed;
+        private final int threads;
+        private final TrialWorker worker;
+        private final ConcurrentLinkedQueue<TrialWorker> idleWorkers;
+        private final ForkJoinPool pool;
+        private final boolean ownsPool;
+
+        private TrialEngine(int rows, int cols, Lattice lattice, boolean periodic,
+                long seed, int threads) {
+            this.rows = rows;
+            this.cols = cols;
+            this.lattice = lattice;
+            this.periodic = periodic;
+            this.seed = seed;
+            this.threads = threads;
+            this.ownsPool = true;
+            this.idleWorkers = new ConcurrentLinkedQueue<>();
+
+            if (threads == 1) {
+                this.worker = new TrialWorker(rows, cols, lattice, periodic);
+                this.pool = null;
+            } else {
+                this.worker = null;
+                this.pool = new ForkJoinPool(threads);
+            }
+        }
+
+        // runs on a pool shared with other engines, which close() leaves alone
+        private TrialEngine(int rows, int cols, Lattice lattice, boolean periodic,
+                long seed, ForkJoinPool pool) {
+            this.rows = rows;
+            this.cols = cols;
+            this.lattice = lattice;
+            this.periodic = periodic;
+            this.seed = seed;
+            this.threads = pool.getParallelism();
+            this.ownsPool = false;
+            this.idleWorkers = new ConcurrentLinkedQueue<>();
+            this.worker = null;
+            this.pool = pool;
+        }
+
+        private TrialWorker acquireWorker() {
+            TrialWorker result = idleWorkers.poll();
+            return (result != null) ? result : new TrialWorker(rows, cols, lattice, periodic);
+        }
+
+        private void releaseWorker(TrialWorker worker) {
+            idleWorkers.offer(worker);
+        }
+
+        private TrialsTask createTask(double[] result, int firstTrial, int count) {
+            int grain = Math.max(1, count / (threads * TASKS_PER_THREAD));
+            return new TrialsTask(this, firstTrial, result, 0, count, grain);
+        }
+
+        private void run(double[] result, int firstTrial, int count) {
+            if (pool == null) {
+                runSeededTrials(worker, seed, firstTrial, result, 0, count);
+            } else {
+                pool.invoke(createTask(result, firstTrial, count));
+            }
+        }
+
+        @Override
+        public void close() {
+            idleWorkers.clear();
+
+            if ((pool != null) && ownsPool) {
+                pool.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Seeded trials of one configuration as a task on {@code pool}, which
+     * other configurations may share; see
+     * {@link #submit(ForkJoinPool, int, int, Lattice, boolean, int, long)}.
+     */
+    private static class RunTask
+            extends RecursiveTask<PercolationStats> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final ForkJoinPool pool;
+        private final int rows;
+        private final int cols;
+        private final Lattice lattice;
+        private final boolean periodic;
+        private final int trials;
+        private final long seed;
+
+        private RunTask(ForkJoinPool pool, int rows, int cols, Lattice lattice,
+                boolean periodic, int trials, long seed) {
+            this.pool = pool;
+            this.rows = rows;
+            this.cols = cols;
+            this.lattice = lattice;
+            this.periodic = periodic;
+            this.trials = trials;
+            this.seed = seed;
+        }
+
+        @Override
+        protected PercolationStats compute() {
+            double[] result = new double[trials];
+
+            try (TrialEngine engine = new TrialEngine(rows, cols, lattice, periodic, seed, pool)) {
+                // already on the pool, so this forks instead of blocking a worker
+                engine.createTask(result, 0, trials).invoke();
+            }
+
+            return new PercolationStats((int) lattice.siteCount(rows, cols), result);
+        }
+    }
+
+    private static class TrialsTask
+            extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final TrialEngine engine;
+        private final int firstTrial;
+        private final double[] result;
+        private final int from;
+        private final int to;
+        private final int grain;
+
+        private TrialsTask(TrialEngine engine, int firstTrial, double[] result,
+                int from, int to, int grain) {
+            this.engine = engine;
+            this.firstTrial = firstTrial;
+            this.result = result;
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+        }
+
+        @Override
+        protected void compute() {
+            if ((to - from) <= grain) {
+                TrialWorker worker = engine.acquireWorker();
+
+                try {
+                    runSeededTrials(worker, engine.seed, firstTrial, result, from, to);
+                } finally {
+                    engine.releaseWorker(worker);
+                }
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new TrialsTask(engine, firstTrial, result, from, middle, grain),
+                        new TrialsTask(engine, firstTrial, result, middle, to, grain));
+            }
+        }
     }
 
     public static void main(String[] args) {
-        if (args.length != 2) {
-            throw new IllegalArgumentException("Expected exactly 2 arguments");
+        if ((args.length < 2) || (args.length > 5)) {
+            throw new IllegalArgumentException(
+                    "Expected n, trials and optionally seed, threads and target half-width");
         }
 
         int n = Integer.parseInt(args[0]);
         int t = Integer.parseInt(args[1]);
 
-        PercolationStats stats = new PercolationStats(n, t);
+        PercolationStats stats;
+
+        if (args.length == 2) {
+            stats = new PercolationStats(n, t);
+        } else {
+            long seed = Long.parseLong(args[2]);
+            int threads = Runtime.getRuntime().availableProcessors();
+
+            if (args.length >= 4) {
+                threads = Integer.parseInt(args[3]);
+            }
+
+            if (args.length == 5) {
+                // t is the upper bound on trials when stopping adaptively
+                double targetHalfWidth = Double.parseDouble(args[4]);
+                stats = new PercolationStats(n, targetHalfWidth, t, seed, threads,
+                        PercolationStats::printProgress);
+            } else {
+                stats = new PercolationStats(n, t, seed, threads);
+            }
+        }
+
+        // the two-argument course mode keeps the assignment's output format
+        if (args.length > 2) {
+            String message = String.format("trials                  = %d", stats.trials());
+            System.out.println(message);
+        }
 
         String message = String.format("mean                    = %f", stats.mean());
         System.out.println(message);
@@ -126,4 +632,14 @@ public class PercolationStats {
         System.out.println(message);
     }
 
+    private static void printProgress(TrialStatistics statistics) {
+        if ((statistics.count() % 100) == 0) {
+            String message = String.format("%8d trials: mean = %f, 95%% half-width = %f",
+                    statistics.count(),
+                    statistics.mean(),
+                    statistics.halfWidth());
+            System.out.println(message);
+        }
+    }
+
 }
@@ -0,0 +1,243 @@
+/******************************************************************************
+ *  Compilation:  javac PercolationSweep.java
+ *  Execution:    java PercolationSweep sweep.txt [seed [threads [csv | json]]]
+ *  Dependencies: PercolationStats.java Lattice.java
+ *
+ *  Runs many PercolationStats configurations in one JVM on one shared
+ *  fork-join pool and prints a results table. Each line of the sweep file
+ *  is one configuration, blank lines and lines starting with # are skipped:
+ *
+ *    <n | rows x cols> <trials> [lattice] [periodic]
+ *
+ *  for example
+ *
+ *    # course lattice, then a strip and a torus
+ *    200 1000
+ *    100x1000 200
+ *    128 500 TRIANGULAR periodic
+ *
+ *  Every configuration gets its own seed, derived from the sweep seed and
+ *  its position among the configurations.
+ *
+ ******************************************************************************/
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+public class PercolationSweep {
+
+    /**
+     * One row of a sweep: a lattice, its size and the number of trials.
+     */
+    public static final class Configuration {
+
+        private final int rows;
+        private final int cols;
+        private final Lattice lattice;
+        private final boolean periodic;
+        private final int trials;
+
+        public Configuration(int rows, int cols, Lattice lattice, boolean periodic, int trials) {
+            this.rows = rows;
+            this.cols = cols;
+            this.lattice = lattice;
+            this.periodic = periodic;
+            this.trials = trials;
+        }
+
+        /**
+         * Parses {@code <n | rows x cols> <trials> [lattice] [periodic]}.
+         */
+        public static Configuration parse(String line) {
+            String[] fields = line.trim().split("\\s+");
+
+            if ((fields.length < 2) || (fields.length > 4)) {
+                throw new IllegalArgumentException("Expected size, trials, lattice, periodic: " + line);
+            }
+
+            String[] size = fields[0].toLowerCase(Locale.ROOT).split("x");
+            int rows = Integer.parseInt(size[0]);
+            int cols = (size.length == 2) ? Integer.parseInt(size[1]) : rows;
+            int trials = Integer.parseInt(fields[1]);
+
+            Lattice lattice = Lattice.SQUARE;
+            if (fields.length >= 3) {
+                lattice = Lattice.valueOf(fields[2].toUpperCase(Locale.ROOT));
+            }
+
+            boolean periodic = false;
+            if (fields.length == 4) {
+                if (!fields[3].equalsIgnoreCase("periodic")) {
+                    throw new IllegalArgumentException("Expected 'periodic': " + line);
+                }
+
+                periodic = true;
+            }
+
+            return new Configuration(rows, cols, lattice, periodic, trials);
+        }
+
+        // site visits for all trials, a rough relative cost
+        private long cost() {
+            return lattice.siteCount(rows, cols) * trials;
+        }
+    }
+
+    /**
+     * Runs every configuration on {@code threads} shared workers and returns
+     * their statistics in the same order. The most expensive configurations
+     * start first so the small ones fill in behind them. Configuration
+     * {@code i} is seeded with {@link #configurationSeed(long, int)}, so the
+     * trial streams of different configurations are independent and each
+     * result equals a separate run of that configuration with that seed.
+     */
+    public static PercolationStats[] run(List<Configuration> configurations, long seed,
+            int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Threads should be greater than 0");
+        }
+
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < configurations.size(); i++) {
+            order.add(i);
+        }
+
+        order.sort(Comparator.comparingLong((Integer i) -> configurations.get(i).cost()).reversed());
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        List<ForkJoinTask<PercolationStats>> tasks =
+                new ArrayList<>(Collections.nCopies(configurations.size(), null));
+
+        try {
+            for (int i : order) {
+                Configuration configuration = configurations.get(i);
+                tasks.set(i, PercolationStats.submit(pool,
+                        configuration.rows,
+                        configuration.cols,
+                        configuration.lattice,
+                        configuration.periodic,
+                        configuration.trials,
+                        configurationSeed(seed, i)));
+            }
+
+            PercolationStats[] result = new PercolationStats[configurations.size()];
+
+            for (int i = 0; i < result.length; i++) {
+                result[i] = tasks.get(i).join();
+            }
+
+            return result;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns the seed of the {@code index}-th configuration of a sweep run
+     * with {@code seed}.
+     */
+    public static long configurationSeed(long seed, int index) {
+        return SplitMix64Random.mix64(seed ^ index);
+    }
+
+    private static void printCsv(List<Configuration> configurations, PercolationStats[] stats) {
+        System.out.println("rows,cols,lattice,periodic,trials,mean,stddev,confidence_lo,confidence_hi");
+
+        for (int i = 0; i < stats.length; i++) {
+            Configuration configuration = configurations.get(i);
+            String message = String.format(Locale.ROOT, "%d,%d,%s,%b,%d,%.8f,%.8f,%.8f,%.8f",
+                    configuration.rows,
+                    configuration.cols,
+                    configuration.lattice,
+                    configuration.periodic,
+                    stats[i].trials(),
+                    stats[i].mean(),
+                    stats[i].stddev(),
+                    stats[i].confidenceLo(),
+                    stats[i].confidenceHi());
+            System.out.println(message);
+        }
+    }
+
+    private static void printJson(List<Configuration> configurations, PercolationStats[] stats) {
+        System.out.println("[");
+
+        for (int i = 0; i < stats.length; i++) {
+            Configuration configuration = configurations.get(i);
+            String separator = (i < (stats.length - 1)) ? "," : "";
+            String message = String.format(Locale.ROOT,
+                    "  {\"rows\": %d, \"cols\": %d, \"lattice\": \"%s\", \"periodic\": %b, "
+                    + "\"trials\": %d, \"mean\": %s, \"stddev\": %s, "
+                    + "\"confidenceLo\": %s, \"confidenceHi\": %s}%s",
+                    configuration.rows,
+                    configuration.cols,
+                    configuration.lattice,
+                    configuration.periodic,
+                    stats[i].trials(),
+                    jsonNumber(stats[i].mean()),
+                    jsonNumber(stats[i].stddev()),
+                    jsonNumber(stats[i].confidenceLo()),
+                    jsonNumber(stats[i].confidenceHi()),
+                    separator);
+            System.out.println(message);
+        }
+
+        System.out.println("]");
+    }
+
+    // stddev is NaN for a single trial, which JSON cannot express
+    private static String jsonNumber(double value) {
+        return Double.isNaN(value) ? "null" : String.format(Locale.ROOT, "%.8f", value);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if ((args.length < 1) || (args.length > 4)) {
+            throw new IllegalArgumentException(
+                    "Expected a sweep file and optionally seed, threads and csv or json");
+        }
+
+        List<Configuration> configurations = new ArrayList<>();
+
+        for (String line : Files.readAllLines(Paths.get(args[0]), StandardCharsets.UTF_8)) {
+            String trimmed = line.trim();
+
+            if (!trimmed.isEmpty() && !trimmed.startsWith("#")) {
+                configurations.add(Configuration.parse(trimmed));
+            }
+        }
+
+        long seed = (args.length >= 2) ? Long.parseLong(args[1]) : System.nanoTime();
+        int threads = Runtime.getRuntime().availableProcessors();
+        String format = "csv";
+
+        if (args.length >= 3) {
+            threads = Integer.parseInt(args[2]);
+        }
+
+        if (args.length == 4) {
+            format = args[3].toLowerCase(Locale.ROOT);
+        }
+
+        if (!format.equals("csv") && !format.equals("json")) {
+            throw new IllegalArgumentException("Format must be csv or json");
+        }
+
+        PercolationStats[] stats = run(configurations, seed, threads);
+
+        if (format.equals("csv")) {
+            printCsv(configurations, stats);
+        } else {
+            printJson(configurations, stats);
+        }
+    }
+
+}
@@ -1,7 +1,7 @@
 /******************************************************************************
  *  Compilation:  javac PercolationVisualizer.java
- *  Execution:    java PercolationVisualizer input.txt
- *  Dependencies: Percolation.java
+ *  Execution:    java PercolationVisualizer input.txt [k | ffps]
+ *  Dependencies: Percolation.java PercolationRenderer.java SiteSequenceFile.java
  *
  *  This program takes the name of a file as a command-line argument.
  *  From that file, it
@@ -10,13 +10,22 @@
  *    - Creates an n-by-n grid of sites (intially all blocked)
  *    - Reads in a sequence of sites (row i, column j) to open.
  *
+ *  The file may also be a binary SiteSequenceFile, which is memory-mapped
+ *  instead of parsed.
+ *
  *  After each site is opened, it draws full sites in light blue,
  *  open sites (that aren't full) in white, and blocked sites in black,
  *  with with site (1, 1) in the upper left-hand corner.
  *
+ *  Only the cells that changed are redrawn (see PercolationRenderer). An
+ *  optional second argument shows only every k-th open ("10") or caps
+ *  the frame rate without any delay ("30fps"), for large inputs.
+ *
  ******************************************************************************/
 
-import java.awt.Font;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
 import edu.princeton.cs.algs4.In;
 import edu.princeton.cs.algs4.StdDraw;
@@ -26,60 +35,112 @@ public class PercolationVisualizer {
     // delay in miliseconds (controls animation speed)
     private static final int DELAY = 100;
 
-    // draw n-by-n percolation system
+    // draw n-by-n percolation system, all cells at once
     public static void draw(Percolation perc, int n) {
-        StdDraw.clear();
-        StdDraw.setPenColor(StdDraw.BLACK);
-        StdDraw.setXscale(-0.05*n, 1.05*n);
-        StdDraw.setYscale(-0.05*n, 1.05*n);   // leave a border to write text
-        StdDraw.filledSquare(n/2.0, n/2.0, n/2.0);
-
-        // draw n-by-n grid
-        int opened = 0;
-        for (int row = 1; row <= n; row++) {
-            for (int col = 1; col <= n; col++) {
-                if (perc.isFull(row, col)) {
-                    StdDraw.setPenColor(StdDraw.BOOK_LIGHT_BLUE);
-                    opened++;
-                }
-                else if (perc.isOpen(row, col)) {
-                    StdDraw.setPenColor(StdDraw.WHITE);
-                    opened++;
-                }
-                else
-                    StdDraw.setPenColor(StdDraw.BLACK);
-                StdDraw.filledSquare(col - 0.5, n - row + 0.5, 0.45);
-            }
-        }
+        PercolationRenderer.draw(perc, n);
+    }
 
-        // write status text
-        StdDraw.setFont(new Font("SansSerif", Font.PLAIN, 12));
-        StdDraw.setPenColor(StdDraw.BLACK);
-        StdDraw.text(0.25*n, -0.025*n, opened + " open sites");
-        if (perc.percolates()) StdDraw.text(0.75*n, -0.025*n, "percolates");
-        else                   StdDraw.text(0.75*n, -0.025*n, "does not percolate");
+    public static void main(String[] args) throws IOException {
+        Frames frames = new Frames((args.length > 1) ? args[1] : "1");
 
-    }
+        // text input may also be a URL or classpath resource, as In allows
+        if (SiteSequenceFile.isSiteSequenceFile(args[0])) {
+            replayBinary(Paths.get(args[0]), frames);
+            return;
+        }
 
-    public static void main(String[] args) {
         In in = new In(args[0]);      // input file
         int n = in.readInt();         // n-by-n percolation system
 
         // turn on animation mode
         StdDraw.enableDoubleBuffering();
 
-        // repeatedly read in sites to open and draw resulting system
-        Percolation perc = new Percolation(n);
-        draw(perc, n);
-        StdDraw.show();
-        StdDraw.pause(DELAY);
+        // repeatedly read in sites to open and redraw what changed
+        Percolation perc = new Percolation(n, UnionFindType.PACKED, true);
+        PercolationRenderer renderer = new PercolationRenderer(perc, n);
+        frames.show();
         while (!in.isEmpty()) {
             int i = in.readInt();
             int j = in.readInt();
             perc.open(i, j);
-            draw(perc, n);
+            renderer.siteOpened(i, j);
+            frames.opened();
+        }
+        frames.finish();
+    }
+
+    // same animation, reading sites from a binary SiteSequenceFile
+    private static void replayBinary(Path path, Frames frames) throws IOException {
+        try (SiteSequenceFile sites = new SiteSequenceFile(path)) {
+            int n = sites.dimension();
+
+            StdDraw.enableDoubleBuffering();
+
+            Percolation perc = new Percolation(n, UnionFindType.PACKED, true);
+            PercolationRenderer renderer = new PercolationRenderer(perc, n);
+            frames.show();
+            while (sites.hasNext()) {
+                int site = sites.next();
+                perc.openSite(site);
+                renderer.siteOpened((site / n) + 1, (site % n) + 1);
+                frames.opened();
+            }
+            frames.finish();
+        }
+    }
+
+    /**
+     * Decides which opens are shown: every k-th open followed by the usual
+     * delay ("k"), or as fast as possible at most f frames per second ("ffps").
+     */
+    private static class Frames {
+
+        private final int every;
+        private final long frameNanos;
+        private int opened;
+        private long lastFrame;
+
+        private Frames(String spec) {
+            if (spec.endsWith("fps")) {
+                double fps = Double.parseDouble(spec.substring(0, spec.length() - 3));
+                if (!(fps > 0)) {
+                    throw new IllegalArgumentException("Frame rate must be greater than 0");
+                }
+                this.every = 0;
+                this.frameNanos = (long) (1e9 / fps);
+            } else {
+                this.every = Integer.parseInt(spec);
+                if (every <= 0) {
+                    throw new IllegalArgumentException("Frame interval must be greater than 0");
+                }
+                this.frameNanos = 0;
+            }
+        }
+
+        private void opened() {
+            opened++;
+
+            if (every > 0) {
+                if ((opened % every) == 0) {
+                    show();
+                }
+            } else if ((System.nanoTime() - lastFrame) >= frameNanos) {
+                show();
+            }
+        }
+
+        private void show() {
+            StdDraw.show();
+            lastFrame = System.nanoTime();
+
+            if (every > 0) {
+                StdDraw.pause(DELAY);
+            }
+        }
+
+        // always show the final state
+        private void finish() {
             StdDraw.show();
-            StdDraw.pause(DELAY);
         }
     }
 }
@@ -0,0 +1,118 @@
+/******************************************************************************
+ *  Name:    Evan Zeimet
+ *  NetID:   podnov
+ *  Precept: P01
+ *
+ *  Partner Name:    N/A
+ *  Partner NetID:   N/A
+ *  Partner Precept: N/A
+ *
+ *  Description:  Random permutation of the site indices [0, size) produced
+ *                one element at a time (incremental Fisher-Yates).
+ ******************************************************************************/
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * Only the sites actually drawn cost a random draw, so a trial that percolates
+ * after 59% of the sites never generates the rest. The backing array starts
+ * out as all zeros, which stands for the identity permutation, and
+ * {@link #reset()} clears what the previous pass touched, either entry by
+ * entry for short passes or with one sequential fill. The instance can
+ * therefore be reused for any number of passes without allocating.
+ */
+public class SitePermutation {
+
+    // passes that drew more than size / 2^shift sites are cleared in full
+    private static final int SPARSE_RESET_SHIFT = 4;
+
+    private final SiteRandom random;
+    // entry i holds (site ^ i) while i is pending, so 0 means site i itself;
+    // once position i has been drawn it holds the swap target j instead
+    private final int[] sites;
+    private int position;
+
+    public SitePermutation(int size, SiteRandom random) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Size must not be negative");
+        }
+
+        this.random = random;
+        this.sites = new int[size];
+    }
+
+    public int size() {
+        return sites.length;
+    }
+
+    /**
+     * Number of sites drawn since the last reset.
+     */
+    public int position() {
+        return position;
+    }
+
+    public boolean hasNext() {
+        return position < sites.length;
+    }
+
+    public int next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        int i = position;
+        int j = i + random.nextInt(sites.length - i);
+
+        int result = sites[j] ^ j;
+        sites[j] = sites[i] ^ i ^ j;
+        // position i is never read again, keep j so reset() can find it
+        sites[i] = j;
+        position++;
+
+        return result;
+    }
+
+    /**
+     * Draws up to {@code buffer.length} sites into {@code buffer} and returns
+     * how many were drawn. Drawing a block at a time keeps the scattered
+     * reads of independent draws overlapping instead of interleaving them
+     * with the caller's own memory accesses.
+     */
+    public int next(int[] buffer) {
+        int count = Math.min(buffer.length, sites.length - position);
+
+        for (int k = 0; k < count; k++) {
+            int i = position + k;
+            int j = i + random.nextInt(sites.length - i);
+
+            buffer[k] = sites[j] ^ j;
+            sites[j] = sites[i] ^ i ^ j;
+            sites[i] = j;
+        }
+
+        position += count;
+        return count;
+    }
+
+    /**
+     * Starts a new permutation, clearing only what the previous one touched.
+     */
+    public void reset() {
+        if (position > (sites.length >>> SPARSE_RESET_SHIFT)) {
+            // past a small fraction a sequential clear beats scattered writes
+            Arrays.fill(sites, 0);
+        } else {
+            // backwards, since a later position may be an earlier swap target
+            for (int i = position - 1; i >= 0; i--) {
+                int j = sites[i];
+                sites[j] = 0;
+                sites[i] = 0;
+            }
+        }
+
+        position = 0;
+    }
+
+}
@@ -0,0 +1,28 @@
+/******************************************************************************
+ *  Name:    Evan Zeimet
+ *  NetID:   podnov
+ *  Precept: P01
+ *
+ *  Partner Name:    N/A
+ *  Partner NetID:   N/A
+ *  Partner Precept: N/A
+ *
+ *  Description:  Explicitly seeded random source for percolation trials.
+ ******************************************************************************/
+
+/**
+ * Unlike {@code StdRandom} an instance is owned by a single worker and can be
+ * reseeded for every trial, so trials need no shared state and no allocation.
+ */
+public interface SiteRandom {
+
+    void setSeed(long seed);
+
+    long nextLong();
+
+    /**
+     * Returns a uniformly distributed value in {@code [0, bound)}.
+     */
+    int nextInt(int bound);
+
+}
@@ -0,0 +1,375 @@
+/******************************************************************************
+ *  Compilation:  javac SiteSequenceFile.java
+ *  Execution:    java SiteSequenceFile input.txt output.bin [varint]
+ *  Dependencies: Percolation.java In.java
+ *
+ *  Compact binary form of the percolation input files: the grid size n and
+ *  the sequence of sites to open, stored as zero-based row-major indices
+ *  (row - 1) * n + (col - 1).
+ *
+ *    offset  size  field
+ *         0     4  magic "PSQ1"
+ *         4     1  encoding: 0 = int32, 1 = unsigned LEB128 varint
+ *         5     3  reserved, zero
+ *         8     4  n
+ *        12     8  number of sites that follow
+ *        20        site indices, little-endian
+ *
+ *  Readers map the file with NIO in windows of at most 1 GB, so files of
+ *  any length stream without parsing text or copying through the heap.
+ *  Running main converts one of the text input files.
+ *
+ ******************************************************************************/
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.NoSuchElementException;
+
+import edu.princeton.cs.algs4.In;
+
+public class SiteSequenceFile
+        implements AutoCloseable {
+
+    public static final int ENCODING_INT32 = 0;
+    public static final int ENCODING_VARINT = 1;
+
+    private static final int MAGIC = 0x31515350; // "PSQ1" read little-endian
+    private static final int HEADER_SIZE = 20;
+    private static final int MAX_VARINT_SIZE = 5;
+    private static final long WINDOW_SIZE = 1L << 30;
+    private static final int WRITE_BUFFER_SIZE = 1 << 16;
+    private static final int REPLAY_BATCH = 1 << 14;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final long fileSize;
+    private final int encoding;
+    private final int dimension;
+    private final long count;
+    private final long siteCount;
+
+    private MappedByteBuffer window;
+    private long windowStart;
+    private long read;
+
+    public SiteSequenceFile(Path path) throws IOException {
+        this.path = path;
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+
+        try {
+            this.fileSize = channel.size();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+            while (header.hasRemaining() && (channel.read(header) >= 0)) {
+                // keep reading until the header is complete or the file ends
+            }
+
+            header.flip();
+
+            if ((header.remaining() < HEADER_SIZE) || (header.getInt(0) != MAGIC)) {
+                throw new IllegalArgumentException(path + " is not a site sequence file");
+            }
+
+            this.encoding = header.get(4);
+            this.dimension = header.getInt(8);
+            this.count = header.getLong(12);
+            this.siteCount = (long) dimension * dimension;
+
+            if ((encoding != ENCODING_INT32) && (encoding != ENCODING_VARINT)) {
+                throw new IllegalArgumentException("Unknown encoding " + encoding);
+            }
+
+            if ((dimension <= 0) || (count < 0)) {
+                throw new IllegalArgumentException(path + " has an invalid header");
+            }
+
+            // a varint takes at least one byte per site, an int32 exactly four
+            long minSiteSize = (encoding == ENCODING_INT32) ? Integer.BYTES : 1;
+            if (count > ((fileSize - HEADER_SIZE) / minSiteSize)) {
+                String message = String.format("%s is truncated: %s sites need more than %s bytes",
+                        path, count, fileSize);
+                throw new IllegalArgumentException(message);
+            }
+
+            mapWindow(HEADER_SIZE);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns whether {@code name} is a local site sequence file. Anything
+     * else, including the URLs and classpath resources algs4's {@code In}
+     * accepts, is not, so callers can fall back to reading text.
+     */
+    public static boolean isSiteSequenceFile(String name) throws IOException {
+        Path path;
+
+        try {
+            path = Paths.get(name);
+        } catch (InvalidPathException e) {
+            return false;
+        }
+
+        return Files.isRegularFile(path) && isSiteSequenceFile(path);
+    }
+
+    public static boolean isSiteSequenceFile(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+
+            while (magic.hasRemaining() && (channel.read(magic) >= 0)) {
+                // keep reading until the magic is complete or the file ends
+            }
+
+            return !magic.hasRemaining() && (magic.getInt(0) == MAGIC);
+        }
+    }
+
+    public int dimension() {
+        return dimension;
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public boolean hasNext() {
+        return read < count;
+    }
+
+    /**
+     * Returns the next zero-based row-major site index.
+     */
+    public int next() throws IOException {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        boolean moreMapped = (windowStart + window.limit()) < fileSize;
+        if ((window.remaining() < MAX_VARINT_SIZE) && moreMapped) {
+            mapWindow(windowStart + window.position());
+        }
+
+        int result;
+
+        try {
+            result = (encoding == ENCODING_INT32) ? window.getInt() : readVarint(window);
+        } catch (BufferUnderflowException e) {
+            // only varints can still run past the end the header check allowed
+            throw new IllegalStateException(path + " ends inside site " + read, e);
+        }
+
+        read++;
+
+        if ((result < 0) || (result >= siteCount)) {
+            String message = String.format("Site index %s is outside the %sx%s grid",
+                    result, dimension, dimension);
+            throw new IllegalStateException(message);
+        }
+
+        return result;
+    }
+
+    /**
+     * Opens every remaining site in {@code perc} and returns how many were read.
+     * The system must be the n-by-n grid the indices were written for.
+     */
+    public long replay(Percolation perc) throws IOException {
+        if ((perc.cols() != dimension) || (perc.siteCount() != siteCount)) {
+            String message = String.format("%s holds sites of a %sx%s grid, not of this system",
+                    path, dimension, dimension);
+            throw new IllegalArgumentException(message);
+        }
+
+        long before = read;
+        int[] buffer = new int[REPLAY_BATCH];
+
+        while (hasNext()) {
+            int size = 0;
+
+            while ((size < buffer.length) && hasNext()) {
+                buffer[size++] = next();
+            }
+
+            perc.openAll(buffer, 0, size);
+        }
+
+        return read - before;
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+
+    private void mapWindow(long position) throws IOException {
+        long size = Math.min(WINDOW_SIZE, fileSize - position);
+        window = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+        window.order(ByteOrder.LITTLE_ENDIAN);
+        windowStart = position;
+    }
+
+    private static int readVarint(ByteBuffer buffer) {
+        int result = 0;
+        int shift = 0;
+        byte b;
+
+        do {
+            b = buffer.get();
+            result |= (b & 0x7f) << shift;
+            shift += 7;
+        } while (b < 0);
+
+        return result;
+    }
+
+    /**
+     * Writes {@code sites.length} site indices for an n-by-n grid.
+     */
+    public static void write(Path path, int n, int[] sites, int encoding) throws IOException {
+        try (Writer writer = new Writer(path, n, encoding)) {
+            for (int site : sites) {
+                writer.write(site);
+            }
+        }
+    }
+
+    /**
+     * Converts a text input file ("n" followed by "row col" pairs) and returns
+     * the number of sites written.
+     */
+    public static long convert(String textFile, Path path, int encoding) throws IOException {
+        In in = new In(textFile);
+        int n = in.readInt();
+
+        try (Writer writer = new Writer(path, n, encoding)) {
+            while (!in.isEmpty()) {
+                int row = in.readInt();
+                int col = in.readInt();
+
+                if ((row <= 0) || (row > n) || (col <= 0) || (col > n)) {
+                    String message = String.format("Site (%s, %s) is outside the %sx%s grid",
+                            row, col, n, n);
+                    throw new IllegalArgumentException(message);
+                }
+
+                writer.write(((row - 1) * n) + (col - 1));
+            }
+
+            return writer.count;
+        }
+    }
+
+    /**
+     * Streams site indices to a new file and fills in the count on close.
+     */
+    public static class Writer
+            implements AutoCloseable {
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        private final int encoding;
+        private final long siteCount;
+        private long count;
+
+        public Writer(Path path, int n, int encoding) throws IOException {
+            if (n <= 0) {
+                throw new IllegalArgumentException("Dimension must be greater than 0");
+            }
+
+            if ((encoding != ENCODING_INT32) && (encoding != ENCODING_VARINT)) {
+                throw new IllegalArgumentException("Unknown encoding " + encoding);
+            }
+
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+            this.buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            this.encoding = encoding;
+            this.siteCount = (long) n * n;
+
+            buffer.putInt(MAGIC);
+            buffer.put((byte) encoding);
+            buffer.put(new byte[3]);
+            buffer.putInt(n);
+            buffer.putLong(0L);
+        }
+
+        public void write(int site) throws IOException {
+            if ((site < 0) || (site >= siteCount)) {
+                throw new IllegalArgumentException("Site index " + site + " is outside the grid");
+            }
+
+            if (buffer.remaining() < MAX_VARINT_SIZE) {
+                flush();
+            }
+
+            if (encoding == ENCODING_INT32) {
+                buffer.putInt(site);
+            } else {
+                while ((site & ~0x7f) != 0) {
+                    buffer.put((byte) ((site & 0x7f) | 0x80));
+                    site >>>= 7;
+                }
+
+                buffer.put((byte) site);
+            }
+
+            count++;
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+
+                ByteBuffer header = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+                header.putLong(0, count);
+                channel.write(header, 12);
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if ((args.length < 2) || (args.length > 3)) {
+            throw new IllegalArgumentException("Expected input.txt, output.bin and optionally varint");
+        }
+
+        int encoding = ENCODING_INT32;
+
+        if (args.length == 3) {
+            if (!"varint".equals(args[2])) {
+                throw new IllegalArgumentException("Unknown encoding " + args[2]);
+            }
+
+            encoding = ENCODING_VARINT;
+        }
+
+        long written = convert(args[0], Paths.get(args[1]), encoding);
+        System.out.println(written + " sites written to " + args[1]);
+    }
+
+}
@@ -0,0 +1,53 @@
+/******************************************************************************
+ *  Name:    Evan Zeimet
+ *  NetID:   podnov
+ *  Precept: P01
+ *
+ *  Partner Name:    N/A
+ *  Partner NetID:   N/A
+ *  Partner Precept: N/A
+ *
+ *  Description:  Long-indexed per-site state behind LongPercolation: union-find
+ *                parents, component flags and open bits.
+ ******************************************************************************/
+
+/**
+ * Parents follow {@link LongPackedUnionFind}: a non-negative value is the
+ * parent of a site, a negative one marks a root and holds the negated size of
+ * its component. Fresh or cleared storage has every site as a blocked root of
+ * size one without flags. Indices are not validated.
+ */
+public interface SiteStorage
+        extends AutoCloseable {
+
+    long size();
+
+    long parent(long site);
+
+    void setParent(long site, long value);
+
+    int flags(long site);
+
+    void setFlags(long site, int value);
+
+    /**
+     * Returns open bits {@code 64 * word} to {@code 64 * word + 63}.
+     */
+    long openWord(long word);
+
+    void setOpenWord(long word, long bits);
+
+    /**
+     * Puts every site back into its own component without flags.
+     */
+    void clearComponents();
+
+    void clearOpenSites();
+
+    /**
+     * Releases the storage. It must not be used afterwards.
+     */
+    @Override
+    void close();
+
+}
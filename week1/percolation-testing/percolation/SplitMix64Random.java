@@ -0,0 +1,71 @@
+/******************************************************************************
+ *  Name:    Evan Zeimet
+ *  NetID:   podnov
+ *  Precept: P01
+ *
+ *  Partner Name:    N/A
+ *  Partner NetID:   N/A
+ *  Partner Precept: N/A
+ *
+ *  Description:  SplitMix64 generator, the algorithm behind
+ *                java.util.SplittableRandom, as a reseedable SiteRandom.
+ ******************************************************************************/
+
+public final class SplitMix64Random
+        implements SiteRandom {
+
+    static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private long state;
+
+    public SplitMix64Random(long seed) {
+        setSeed(seed);
+    }
+
+    @Override
+    public void setSeed(long seed) {
+        this.state = seed;
+    }
+
+    @Override
+    public long nextLong() {
+        state += GOLDEN_GAMMA;
+        return mix64(state);
+    }
+
+    @Override
+    public int nextInt(int bound) {
+        return boundedInt(this, bound);
+    }
+
+    static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Lemire's multiply-shift bounded draw: one multiplication in the common
+     * case and rejection only for the small biased range.
+     */
+    static int boundedInt(SiteRandom random, int bound) {
+        if (bound <= 0) {
+            throw new IllegalArgumentException("Bound must be greater than 0");
+        }
+
+        long product = (random.nextLong() >>> 32) * bound;
+        long low = product & 0xffffffffL;
+
+        if (low < bound) {
+            long threshold = (0x100000000L - bound) % bound;
+
+            while (low < threshold) {
+                product = (random.nextLong() >>> 32) * bound;
+                low = product & 0xffffffffL;
+            }
+        }
+
+        return (int) (product >>> 32);
+    }
+
+}
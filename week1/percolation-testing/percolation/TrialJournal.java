@@ -0,0 +1,427 @@
+/******************************************************************************
+ *  Compilation:  javac TrialJournal.java
+ *  Execution:    java TrialJournal journal n trials seed [threads [target]]
+ *  Dependencies: PercolationStats.java TrialStatistics.java Lattice.java
+ *
+ *  Append-only record of a seeded PercolationStats campaign, so a run that
+ *  dies can continue from its last checkpoint instead of starting over.
+ *
+ *    offset  size  field
+ *         0     4  magic "PTJ1"
+ *         4     4  bit 0: per-trial ratios kept, bit 1: periodic sides
+ *         8     4  rows
+ *        12     4  cols
+ *        16     4  lattice, as Lattice.ordinal()
+ *        20     4  maximum number of trials
+ *        24     8  target 95% half-width, 0 for a fixed trial count
+ *        32     8  seed
+ *        40        checkpoint records
+ *
+ *  Every checkpoint record holds the accumulator after a batch of trials:
+ *
+ *         0     4  k, the ratios in this record (0 unless ratios are kept)
+ *         4     4  trials completed
+ *         8     8  Welford mean
+ *        16     8  Welford sum of squared differences
+ *        24   8 k  the batch's open-site ratios, in trial order
+ *     24+8k     4  CRC-32 of the record's preceding bytes
+ *
+ *  All values are little-endian. Trial seeds derive from the seed and the
+ *  trial number alone, so the number of completed trials is the whole RNG
+ *  position. Opening a journal drops a torn last record.
+ *
+ *  Running main creates the journal, or resumes it if it exists, and runs
+ *  the campaign to completion.
+ *
+ ******************************************************************************/
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * Records are appended after every batch but only forced to disk once a
+ * second and on {@link #close()}, so journaling costs one small write per
+ * batch. A crash loses at most the last second of trials.
+ */
+public final class TrialJournal
+        implements AutoCloseable {
+
+    private static final int MAGIC = 0x314a5450; // "PTJ1" read little-endian
+    private static final int HEADER_SIZE = 40;
+    private static final int RECORD_OVERHEAD = 28;
+    private static final int FLAG_RATIOS = 1;
+    private static final int FLAG_PERIODIC = 2;
+    private static final long SYNC_INTERVAL_NANOS = 1_000_000_000L;
+
+    private final FileChannel channel;
+    private final int rows;
+    private final int cols;
+    private final Lattice lattice;
+    private final boolean periodic;
+    private final int maxTrials;
+    private final double targetHalfWidth;
+    private final long seed;
+    private final boolean keepsRatios;
+
+    private TrialStatistics statistics;
+    // completed ratios when kept, grown as records are appended
+    private double[] ratios;
+    private ByteBuffer record;
+    private long lastSync;
+    private boolean unsynced;
+
+    private TrialJournal(FileChannel channel, ByteBuffer header) {
+        int flags = header.getInt(4);
+
+        this.channel = channel;
+        this.rows = header.getInt(8);
+        this.cols = header.getInt(12);
+        this.lattice = Lattice.values()[header.getInt(16)];
+        this.periodic = (flags & FLAG_PERIODIC) != 0;
+        this.maxTrials = header.getInt(20);
+        this.targetHalfWidth = header.getDouble(24);
+        this.seed = header.getLong(32);
+        this.keepsRatios = (flags & FLAG_RATIOS) != 0;
+
+        this.statistics = new TrialStatistics();
+        this.ratios = keepsRatios ? new double[Math.min(maxTrials, 1 << 10)] : null;
+        this.record = ByteBuffer.allocate(RECORD_OVERHEAD).order(ByteOrder.LITTLE_ENDIAN);
+        this.lastSync = System.nanoTime();
+    }
+
+    /**
+     * Starts a journal at {@code path}, replacing any file there, for up to
+     * {@code maxTrials} trials that stop early once the 95% half-width is at
+     * most {@code targetHalfWidth}, or never if it is 0.
+     */
+    public static TrialJournal create(Path path, int rows, int cols, Lattice lattice,
+            boolean periodic, int maxTrials, double targetHalfWidth, long seed,
+            boolean keepRatios) throws IOException {
+        if ((rows <= 0) || (cols <= 0) || (maxTrials <= 0)) {
+            throw new IllegalArgumentException("Dimension and trials should be greater than 0");
+        }
+
+        if (!(targetHalfWidth >= 0)) {
+            throw new IllegalArgumentException("Target half-width should not be negative");
+        }
+
+        int flags = (keepRatios ? FLAG_RATIOS : 0) | (periodic ? FLAG_PERIODIC : 0);
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(0, MAGIC);
+        header.putInt(4, flags);
+        header.putInt(8, rows);
+        header.putInt(12, cols);
+        header.putInt(16, lattice.ordinal());
+        header.putInt(20, maxTrials);
+        header.putDouble(24, targetHalfWidth);
+        header.putLong(32, seed);
+
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+
+        try {
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+
+            channel.force(true);
+            header.clear();
+            return new TrialJournal(channel, header);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens the journal at {@code path} and recovers its last complete
+     * checkpoint. New records are appended after it.
+     */
+    public static TrialJournal open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, header);
+
+            boolean valid = !header.hasRemaining() && (header.getInt(0) == MAGIC)
+                    && (header.getInt(16) >= 0) && (header.getInt(16) < Lattice.values().length);
+            if (!valid) {
+                throw new IllegalArgumentException(path + " is not a trial journal");
+            }
+
+            TrialJournal journal = new TrialJournal(channel, header);
+            journal.recover();
+            return journal;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining() && (channel.read(buffer) >= 0)) {
+            // keep reading until the buffer is full or the file ends
+        }
+    }
+
+    private void recover() throws IOException {
+        long position = HEADER_SIZE;
+        long size = channel.size();
+        ByteBuffer prefix = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+
+        while ((size - position) >= RECORD_OVERHEAD) {
+            prefix.clear();
+            channel.position(position);
+            readFully(channel, prefix);
+
+            int k = prefix.getInt(0);
+            long length = RECORD_OVERHEAD + (8L * k);
+            if ((k < 0) || (k > maxTrials) || (length > (size - position))) {
+                break;
+            }
+
+            ByteBuffer buffer = recordBuffer(k);
+            channel.position(position);
+            readFully(channel, buffer);
+
+            if (!checksumMatches(buffer, (int) length)) {
+                break;
+            }
+
+            int count = buffer.getInt(4);
+            int previous = statistics.count();
+            boolean consistent = (count > previous) && (count <= maxTrials)
+                    && (!keepsRatios || (k == (count - previous)));
+            if (!consistent) {
+                break;
+            }
+
+            if (keepsRatios) {
+                ensureRatioCapacity(count);
+
+                for (int i = 0; i < k; i++) {
+                    ratios[previous + i] = buffer.getDouble(24 + (8 * i));
+                }
+            }
+
+            statistics = new TrialStatistics(count, buffer.getDouble(8), buffer.getDouble(16));
+            position += length;
+        }
+
+        // anything past the last good record is a torn write
+        channel.truncate(position);
+        channel.position(position);
+    }
+
+    private ByteBuffer recordBuffer(int k) {
+        int length = RECORD_OVERHEAD + (8 * k);
+
+        if (record.capacity() < length) {
+            record = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        record.clear().limit(length);
+        return record;
+    }
+
+    private static boolean checksumMatches(ByteBuffer buffer, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, length - 4);
+        return buffer.getInt(length - 4) == (int) crc.getValue();
+    }
+
+    private void ensureRatioCapacity(int count) {
+        if (count > ratios.length) {
+            int capacity = (int) Math.min(maxTrials, Math.max(count, 2L * ratios.length));
+            ratios = Arrays.copyOf(ratios, capacity);
+        }
+    }
+
+    public int rows() {
+        return rows;
+    }
+
+    public int cols() {
+        return cols;
+    }
+
+    public Lattice lattice() {
+        return lattice;
+    }
+
+    public boolean periodic() {
+        return periodic;
+    }
+
+    public int maxTrials() {
+        return maxTrials;
+    }
+
+    public double targetHalfWidth() {
+        return targetHalfWidth;
+    }
+
+    public long seed() {
+        return seed;
+    }
+
+    public boolean keepsRatios() {
+        return keepsRatios;
+    }
+
+    /**
+     * Returns the accumulator as of the last checkpoint.
+     */
+    public TrialStatistics statistics() {
+        return statistics.copy();
+    }
+
+    /**
+     * Returns the ratio of every completed trial in trial order, or
+     * {@code null} if the journal does not keep them.
+     */
+    public double[] ratios() {
+        return keepsRatios ? Arrays.copyOf(ratios, statistics.count()) : null;
+    }
+
+    /**
+     * Appends a checkpoint: {@code after} is the accumulator once
+     * {@code batch[0]} to {@code batch[count - 1]} were added, in order, to
+     * the previous checkpoint.
+     */
+    void append(TrialStatistics after, double[] batch, int count) throws IOException {
+        int previous = statistics.count();
+        if (after.count() != (previous + count)) {
+            throw new IllegalArgumentException("Checkpoints must follow each other");
+        }
+
+        int k = keepsRatios ? count : 0;
+        int length = RECORD_OVERHEAD + (8 * k);
+        ByteBuffer buffer = recordBuffer(k);
+
+        buffer.putInt(0, k);
+        buffer.putInt(4, after.count());
+        buffer.putDouble(8, after.mean());
+        buffer.putDouble(16, after.sumOfSquares());
+
+        for (int i = 0; i < k; i++) {
+            buffer.putDouble(24 + (8 * i), batch[i]);
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, length - 4);
+        buffer.putInt(length - 4, (int) crc.getValue());
+
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+
+        if (keepsRatios) {
+            ensureRatioCapacity(after.count());
+            System.arraycopy(batch, 0, ratios, previous, count);
+        }
+
+        statistics = after.copy();
+        unsynced = true;
+
+        if ((System.nanoTime() - lastSync) >= SYNC_INTERVAL_NANOS) {
+            sync();
+        }
+    }
+
+    /**
+     * Forces the appended checkpoints to disk.
+     */
+    public void sync() throws IOException {
+        if (unsynced) {
+            channel.force(false);
+            unsynced = false;
+        }
+
+        lastSync = System.nanoTime();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            sync();
+        } finally {
+            channel.close();
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if ((args.length < 4) || (args.length > 6)) {
+            throw new IllegalArgumentException(
+                    "Expected journal, n, trials, seed and optionally threads and target half-width");
+        }
+
+        Path path = Paths.get(args[0]);
+        int n = Integer.parseInt(args[1]);
+        int trials = Integer.parseInt(args[2]);
+        long seed = Long.parseLong(args[3]);
+        int threads = Runtime.getRuntime().availableProcessors();
+        double targetHalfWidth = 0;
+
+        if (args.length >= 5) {
+            threads = Integer.parseInt(args[4]);
+        }
+
+        if (args.length == 6) {
+            targetHalfWidth = Double.parseDouble(args[5]);
+        }
+
+        TrialJournal journal;
+
+        if (Files.exists(path)) {
+            journal = open(path);
+
+            boolean matches = (journal.rows() == n) && (journal.cols() == n)
+                    && (journal.maxTrials() == trials) && (journal.seed() == seed);
+            if (!matches) {
+                journal.close();
+                throw new IllegalArgumentException(path + " belongs to a different campaign");
+            }
+
+            String message = String.format("resuming after %d trials", journal.statistics().count());
+            System.out.println(message);
+        } else {
+            journal = create(path, n, n, Lattice.SQUARE, false, trials, targetHalfWidth, seed, true);
+        }
+
+        PercolationStats stats;
+
+        try {
+            stats = new PercolationStats(journal, threads);
+        } finally {
+            journal.close();
+        }
+
+        String message = String.format("trials                  = %d", stats.trials());
+        System.out.println(message);
+
+        message = String.format("mean                    = %f", stats.mean());
+        System.out.println(message);
+
+        message = String.format("stddev                  = %f", stats.stddev());
+        System.out.println(message);
+
+        message = String.format("%s confidence interval = [%f, %f]",
+                "95%",
+                stats.confidenceLo(),
+                stats.confidenceHi());
+        System.out.println(message);
+    }
+
+}
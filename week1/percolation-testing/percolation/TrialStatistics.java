@@ -0,0 +1,83 @@
+/******************************************************************************
+ *  Name:    Evan Zeimet
+ *  NetID:   podnov
+ *  Precept: P01
+ *
+ *  Partner Name:    N/A
+ *  Partner NetID:   N/A
+ *  Partner Precept: N/A
+ *
+ *  Description:  Running mean, standard deviation and 95% confidence
+ *                interval of percolation trial results (Welford's online
+ *                algorithm).
+ ******************************************************************************/
+
+public class TrialStatistics {
+
+    static final double CONFIDENCE_95 = 1.96;
+
+    private int count;
+    private double mean;
+    // sum of squared differences from the current mean
+    private double m2;
+
+    public TrialStatistics() {
+    }
+
+    // restores a state saved from count(), mean() and sumOfSquares()
+    TrialStatistics(int count, double mean, double m2) {
+        this.count = count;
+        this.mean = mean;
+        this.m2 = m2;
+    }
+
+    public void add(double value) {
+        count++;
+        double delta = value - mean;
+        mean += delta / count;
+        m2 += delta * (value - mean);
+    }
+
+    public int count() {
+        return count;
+    }
+
+    public double mean() {
+        return (count == 0) ? Double.NaN : mean;
+    }
+
+    double sumOfSquares() {
+        return m2;
+    }
+
+    TrialStatistics copy() {
+        return new TrialStatistics(count, mean, m2);
+    }
+
+    /**
+     * Sample standard deviation, {@code NaN} until two values were added.
+     */
+    public double stddev() {
+        if (count < 2) {
+            return Double.NaN;
+        }
+
+        return Math.sqrt(m2 / (count - 1));
+    }
+
+    /**
+     * Half-width of the 95% confidence interval around {@link #mean()}.
+     */
+    public double halfWidth() {
+        return (CONFIDENCE_95 * stddev()) / Math.sqrt(count);
+    }
+
+    public double confidenceLo() {
+        return mean() - halfWidth();
+    }
+
+    public double confidenceHi() {
+        return mean() + halfWidth();
+    }
+
+}
@@ -0,0 +1,22 @@
+/******************************************************************************
+ *  Name:    Evan Zeimet
+ *  NetID:   podnov
+ *  Precept: P01
+ *
+ *  Partner Name:    N/A
+ *  Partner NetID:   N/A
+ *  Partner Precept: N/A
+ *
+ *  Description:  Receives running results from a streaming PercolationStats.
+ ******************************************************************************/
+
+public interface TrialStatisticsListener {
+
+    /**
+     * Called on the thread that constructed the PercolationStats, once per
+     * trial in trial order. {@code statistics} is live and keeps changing
+     * after this returns, so copy any values that need to be kept.
+     */
+    void trialCompleted(TrialStatistics statistics);
+
+}
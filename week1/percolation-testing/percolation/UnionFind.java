@@ -0,0 +1,40 @@
+/******************************************************************************
+ *  Name:    Evan Zeimet
+ *  NetID:   podnov
+ *  Precept: P01
+ *
+ *  Partner Name:    N/A
+ *  Partner NetID:   N/A
+ *  Partner Precept: N/A
+ *
+ *  Description:  Union-find operations needed by Percolation, so the
+ *                backing engine can be swapped.
+ ******************************************************************************/
+
+public interface UnionFind {
+
+    int find(int p);
+
+    boolean connected(int p, int q);
+
+    void union(int p, int q);
+
+    /**
+     * Returns the flags of the component containing {@code p}. Only engines
+     * created with flags, see {@link UnionFindType#create(int, boolean)},
+     * carry them; union ors the flags of both components together.
+     */
+    int flags(int p);
+
+    /**
+     * Adds {@code bits} to the component containing {@code p} and returns the
+     * resulting flags of that component.
+     */
+    int addFlags(int p, int bits);
+
+    /**
+     * Returns every site to its own component.
+     */
+    void reset();
+
+}
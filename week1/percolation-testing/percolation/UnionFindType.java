@@ -0,0 +1,117 @@
+/******************************************************************************
+ *  Name:    Evan Zeimet
+ *  NetID:   podnov
+ *  Precept: P01
+ *
+ *  Partner Name:    N/A
+ *  Partner NetID:   N/A
+ *  Partner Precept: N/A
+ *
+ *  Description:  Selects the union-find engine backing a Percolation.
+ ******************************************************************************/
+
+import java.util.Arrays;
+
+import edu.princeton.cs.algs4.WeightedQuickUnionUF;
+
+public enum UnionFindType {
+
+    /**
+     * algs4 {@link WeightedQuickUnionUF}: validated, no path compression.
+     */
+    WEIGHTED_QUICK_UNION {
+        @Override
+        public UnionFind create(int n, boolean withFlags) {
+            return new WeightedQuickUnionAdapter(n, withFlags);
+        }
+    },
+
+    /**
+     * {@link PackedUnionFind}: single array, path halving, no bounds checks.
+     */
+    PACKED {
+        @Override
+        public UnionFind create(int n, boolean withFlags) {
+            return new PackedUnionFind(n, withFlags);
+        }
+    };
+
+    public UnionFind create(int n) {
+        return create(n, false);
+    }
+
+    /**
+     * Creates an engine for {@code n} sites whose components carry a byte of
+     * flag bits if {@code withFlags} is set.
+     */
+    public abstract UnionFind create(int n, boolean withFlags);
+
+    private static final class WeightedQuickUnionAdapter
+            implements UnionFind {
+
+        private final int n;
+        // indexed by root, like PackedUnionFind's flags
+        private final byte[] flags;
+        private WeightedQuickUnionUF uf;
+
+        private WeightedQuickUnionAdapter(int n, boolean withFlags) {
+            this.n = n;
+            this.flags = withFlags ? new byte[n] : null;
+            this.uf = new WeightedQuickUnionUF(n);
+        }
+
+        @Override
+        public int find(int p) {
+            return uf.find(p);
+        }
+
+        @Override
+        public boolean connected(int p, int q) {
+            return uf.connected(p, q);
+        }
+
+        @Override
+        public void union(int p, int q) {
+            if (flags == null) {
+                uf.union(p, q);
+                return;
+            }
+
+            int rootP = uf.find(p);
+            int rootQ = uf.find(q);
+
+            if (rootP == rootQ) {
+                return;
+            }
+
+            // linking two roots needs no further finds, and one of them is
+            // the new root or directly below it
+            uf.union(rootP, rootQ);
+            int root = uf.find(rootP);
+            flags[root] = (byte) (flags[rootP] | flags[rootQ]);
+        }
+
+        @Override
+        public int flags(int p) {
+            return flags[uf.find(p)];
+        }
+
+        @Override
+        public int addFlags(int p, int bits) {
+            int root = uf.find(p);
+            flags[root] |= (byte) bits;
+            return flags[root];
+        }
+
+        // WeightedQuickUnionUF cannot be cleared in place
+        @Override
+        public void reset() {
+            uf = new WeightedQuickUnionUF(n);
+
+            if (flags != null) {
+                Arrays.fill(flags, (byte) 0);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,59 @@
+/******************************************************************************
+ *  Name:    Evan Zeimet
+ *  NetID:   podnov
+ *  Precept: P01
+ *
+ *  Partner Name:    N/A
+ *  Partner NetID:   N/A
+ *  Partner Precept: N/A
+ *
+ *  Description:  xoshiro256** generator (Blackman and Vigna) as a
+ *                reseedable SiteRandom.
+ ******************************************************************************/
+
+public final class Xoshiro256Random
+        implements SiteRandom {
+
+    private long s0;
+    private long s1;
+    private long s2;
+    private long s3;
+
+    public Xoshiro256Random(long seed) {
+        setSeed(seed);
+    }
+
+    /**
+     * Expands the seed into the 256-bit state with SplitMix64, as recommended
+     * by the authors, which also rules out the all-zero state.
+     */
+    @Override
+    public void setSeed(long seed) {
+        long z = seed;
+        s0 = SplitMix64Random.mix64(z += SplitMix64Random.GOLDEN_GAMMA);
+        s1 = SplitMix64Random.mix64(z += SplitMix64Random.GOLDEN_GAMMA);
+        s2 = SplitMix64Random.mix64(z += SplitMix64Random.GOLDEN_GAMMA);
+        s3 = SplitMix64Random.mix64(z + SplitMix64Random.GOLDEN_GAMMA);
+    }
+
+    @Override
+    public long nextLong() {
+        long result = Long.rotateLeft(s1 * 5, 7) * 9;
+        long t = s1 << 17;
+
+        s2 ^= s0;
+        s3 ^= s1;
+        s1 ^= s2;
+        s0 ^= s3;
+        s2 ^= t;
+        s3 = Long.rotateLeft(s3, 45);
+
+        return result;
+    }
+
+    @Override
+    public int nextInt(int bound) {
+        return SplitMix64Random.boundedInt(this, bound);
+    }
+
+}
@@ -0,0 +1,452 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A lock-free {@link Deque} for any number of producers and consumers, after
+ * Maged Michael's CAS-based deque: the two end nodes, the size and a status
+ * live in one immutable anchor that every operation replaces with a single
+ * compare-and-set. A push first swings the anchor to the new node and marks
+ * it unstable, then links the old end node back to it; any thread that finds
+ * the anchor unstable finishes that link before trying its own operation, so
+ * no thread ever waits on another.
+ * <p>
+ * {@link #size()} and {@link #isEmpty()} read the anchor, so they are exact
+ * at the instant of the read. Iterators are weakly consistent: they walk the
+ * deque as it was when they were created, never throw
+ * {@code ConcurrentModificationException}, and may or may not reflect later
+ * changes. Because another thread may empty the deque between
+ * {@code isEmpty()} and a remove, use {@link #pollFirst()} and
+ * {@link #pollLast()} to remove only if present.
+ */
+public class ConcurrentDeque<Item>
+        implements Iterable<Item> {
+
+    private static final String CANNOT_ADD_NULL_VALUE = "Cannot add null value";
+
+    private static final int STABLE = 0;
+    private static final int LEFT_PUSH = 1;
+    private static final int RIGHT_PUSH = 2;
+
+    private static final VarHandle LEFT;
+    private static final VarHandle RIGHT;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            LEFT = lookup.findVarHandle(Node.class, "left", Node.class);
+            RIGHT = lookup.findVarHandle(Node.class, "right", Node.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final AtomicReference<Anchor<Item>> anchor =
+            new AtomicReference<>(new Anchor<>(null, null, STABLE, 0));
+
+    public ConcurrentDeque() {
+
+    }
+
+    public boolean isEmpty() {
+        return anchor.get().size == 0;
+    }
+
+    public int size() {
+        return anchor.get().size;
+    }
+
+    public void addFirst(Item item) {
+        if (item == null) {
+            throw new IllegalArgumentException(CANNOT_ADD_NULL_VALUE);
+        }
+
+        Node<Item> node = new Node<>(item);
+
+        while (true) {
+            Anchor<Item> a = anchor.get();
+
+            if (a.first == null) {
+                if (anchor.compareAndSet(a, new Anchor<>(node, node, STABLE, 1))) {
+                    return;
+                }
+            } else if (a.status == STABLE) {
+                validateAdd(a);
+                node.right = a.first;
+                Anchor<Item> pushed = new Anchor<>(node, a.last, LEFT_PUSH, a.size + 1);
+
+                if (anchor.compareAndSet(a, pushed)) {
+                    stabilizeFirst(pushed);
+                    return;
+                }
+            } else {
+                stabilize(a);
+            }
+        }
+    }
+
+    public void addLast(Item item) {
+        if (item == null) {
+            throw new IllegalArgumentException(CANNOT_ADD_NULL_VALUE);
+        }
+
+        Node<Item> node = new Node<>(item);
+
+        while (true) {
+            Anchor<Item> a = anchor.get();
+
+            if (a.last == null) {
+                if (anchor.compareAndSet(a, new Anchor<>(node, node, STABLE, 1))) {
+                    return;
+                }
+            } else if (a.status == STABLE) {
+                validateAdd(a);
+                node.left = a.last;
+                Anchor<Item> pushed = new Anchor<>(a.first, node, RIGHT_PUSH, a.size + 1);
+
+                if (anchor.compareAndSet(a, pushed)) {
+                    stabilizeLast(pushed);
+                    return;
+                }
+            } else {
+                stabilize(a);
+            }
+        }
+    }
+
+    public Item removeFirst() {
+        Item result = pollFirst();
+
+        if (result == null) {
+            throw new NoSuchElementException();
+        }
+
+        return result;
+    }
+
+    public Item removeLast() {
+        Item result = pollLast();
+
+        if (result == null) {
+            throw new NoSuchElementException();
+        }
+
+        return result;
+    }
+
+    /**
+     * Removes and returns the first item, or returns null if the deque is
+     * empty.
+     */
+    public Item pollFirst() {
+        while (true) {
+            Anchor<Item> a = anchor.get();
+
+            if (a.first == null) {
+                return null;
+            }
+
+            if (a.first == a.last) {
+                if (anchor.compareAndSet(a, new Anchor<>(null, null, STABLE, 0))) {
+                    return a.first.item;
+                }
+            } else if (a.status == STABLE) {
+                Node<Item> next = (Node<Item>) RIGHT.getVolatile(a.first);
+
+                if (anchor.compareAndSet(a, new Anchor<>(next, a.last, STABLE, a.size - 1))) {
+                    return a.first.item;
+                }
+            } else {
+                stabilize(a);
+            }
+        }
+    }
+
+    /**
+     * Removes and returns the last item, or returns null if the deque is
+     * empty.
+     */
+    public Item pollLast() {
+        while (true) {
+            Anchor<Item> a = anchor.get();
+
+            if (a.last == null) {
+                return null;
+            }
+
+            if (a.first == a.last) {
+                if (anchor.compareAndSet(a, new Anchor<>(null, null, STABLE, 0))) {
+                    return a.last.item;
+                }
+            } else if (a.status == STABLE) {
+                Node<Item> previous = (Node<Item>) LEFT.getVolatile(a.last);
+
+                if (anchor.compareAndSet(a, new Anchor<>(a.first, previous, STABLE, a.size - 1))) {
+                    return a.last.item;
+                }
+            } else {
+                stabilize(a);
+            }
+        }
+    }
+
+    private static void validateAdd(Anchor<?> a) {
+        if (a.size == Integer.MAX_VALUE) {
+            throw new IllegalStateException("Deque is full");
+        }
+    }
+
+    private void stabilize(Anchor<Item> a) {
+        if (a.status == LEFT_PUSH) {
+            stabilizeFirst(a);
+        } else {
+            stabilizeLast(a);
+        }
+    }
+
+    // links the old first node back to the pushed one, then marks a stable
+    private void stabilizeFirst(Anchor<Item> a) {
+        Node<Item> next = (Node<Item>) RIGHT.getVolatile(a.first);
+
+        if (anchor.get() != a) {
+            return;
+        }
+
+        Node<Item> nextPrevious = (Node<Item>) LEFT.getVolatile(next);
+
+        if (nextPrevious != a.first) {
+            if (anchor.get() != a) {
+                return;
+            }
+
+            if (!LEFT.compareAndSet(next, nextPrevious, a.first)) {
+                return;
+            }
+        }
+
+        anchor.compareAndSet(a, new Anchor<>(a.first, a.last, STABLE, a.size));
+    }
+
+    // links the old last node forward to the pushed one, then marks a stable
+    private void stabilizeLast(Anchor<Item> a) {
+        Node<Item> previous = (Node<Item>) LEFT.getVolatile(a.last);
+
+        if (anchor.get() != a) {
+            return;
+        }
+
+        Node<Item> previousNext = (Node<Item>) RIGHT.getVolatile(previous);
+
+        if (previousNext != a.last) {
+            if (anchor.get() != a) {
+                return;
+            }
+
+            if (!RIGHT.compareAndSet(previous, previousNext, a.last)) {
+                return;
+            }
+        }
+
+        anchor.compareAndSet(a, new Anchor<>(a.first, a.last, STABLE, a.size));
+    }
+
+    @Override
+    public Iterator<Item> iterator() {
+        return new ConcurrentDequeIterator();
+    }
+
+    /**
+     * The end nodes, size and status of the deque at one instant.
+     */
+    private static final class Anchor<Item> {
+        private final Node<Item> first;
+        private final Node<Item> last;
+        private final int status;
+        private final int size;
+
+        private Anchor(Node<Item> first, Node<Item> last, int status, int size) {
+            this.first = first;
+            this.last = last;
+            this.status = status;
+            this.size = size;
+        }
+    }
+
+    private static final class Node<Item> {
+        private volatile Node<Item> left;
+        private final Item item;
+        private volatile Node<Item> right;
+
+        private Node(Item item) {
+            this.item = item;
+        }
+    }
+
+    private class ConcurrentDequeIterator
+            implements Iterator<Item> {
+
+        private Node<Item> next;
+        private Node<Item> last;
+        // later pushes may relink nodes, so never walk more than the snapshot
+        private int remaining;
+
+        private ConcurrentDequeIterator() {
+            Anchor<Item> a = anchor.get();
+
+            while (a.status != STABLE) {
+                stabilize(a);
+                a = anchor.get();
+            }
+
+            next = a.first;
+            last = a.last;
+            remaining = a.size;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return (next != null) && (remaining > 0);
+        }
+
+        @Override
+        public Item next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            Node<Item> current = next;
+            next = (current == last) ? null : current.right;
+            remaining--;
+
+            return current.item;
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        ConcurrentDeque<String> deque = new ConcurrentDeque<>();
+        assertIterator(deque, "");
+
+        deque.addFirst("c");
+        deque.addLast("d");
+        deque.addFirst("b");
+        deque.addFirst("a");
+        deque.addLast("e");
+        assertIterator(deque, "abcde");
+
+        assertObjectEquals("e", deque.removeLast());
+        assertObjectEquals("a", deque.removeFirst());
+        assertObjectEquals("d", deque.removeLast());
+        assertObjectEquals("b", deque.removeFirst());
+        assertObjectEquals("c", deque.removeLast());
+        assertIterator(deque, "");
+
+        if (deque.pollFirst() != null || deque.pollLast() != null) {
+            throw new AssertionError("polling an empty deque should return null");
+        }
+
+        int threads = (args.length > 0) ? Integer.parseInt(args[0]) : 4;
+        assertNoLostItems(threads, 200000);
+    }
+
+    // every thread pushes distinct values at random ends and pops as many;
+    // afterwards the popped and remaining values must be each value once
+    private static void assertNoLostItems(int threads, int perThread)
+            throws InterruptedException {
+        ConcurrentDeque<Integer> deque = new ConcurrentDeque<>();
+        boolean[][] seen = new boolean[threads][];
+        Thread[] workers = new Thread[threads];
+        int[][] popped = new int[threads][];
+        int[] poppedCount = new int[threads];
+
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            popped[t] = new int[perThread];
+
+            workers[t] = new Thread(() -> {
+                java.util.Random random = new java.util.Random(thread);
+
+                for (int i = 0; i < perThread; i++) {
+                    int value = (thread * perThread) + i;
+
+                    if (random.nextBoolean()) {
+                        deque.addFirst(value);
+                    } else {
+                        deque.addLast(value);
+                    }
+
+                    if (random.nextInt(3) != 0) {
+                        Integer item = random.nextBoolean() ? deque.pollFirst() : deque.pollLast();
+
+                        if (item != null) {
+                            popped[thread][poppedCount[thread]++] = item;
+                        }
+                    }
+                }
+            });
+            workers[t].start();
+        }
+
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        for (int t = 0; t < threads; t++) {
+            seen[t] = new boolean[perThread];
+        }
+
+        int total = 0;
+
+        for (int t = 0; t < threads; t++) {
+            for (int i = 0; i < poppedCount[t]; i++) {
+                markSeen(seen, perThread, popped[t][i]);
+                total++;
+            }
+        }
+
+        int remaining = deque.size();
+
+        for (Integer item : deque) {
+            markSeen(seen, perThread, item);
+            total++;
+        }
+
+        String message = String.format("%d popped + %d remaining should be %d",
+                total - remaining, remaining, threads * perThread);
+        System.out.println(message);
+
+        if (total != (threads * perThread)) {
+            throw new AssertionError(message);
+        }
+    }
+
+    private static void markSeen(boolean[][] seen, int perThread, int value) {
+        if (seen[value / perThread][value % perThread]) {
+            throw new AssertionError(value + " was seen twice");
+        }
+
+        seen[value / perThread][value % perThread] = true;
+    }
+
+    private static void assertIterator(ConcurrentDeque<String> deque, String expected) {
+        StringBuilder sb = new StringBuilder();
+
+        for (String item : deque) {
+            sb.append(item);
+        }
+
+        assertObjectEquals(expected, sb.toString());
+
+        if (deque.size() != expected.length()) {
+            throw new AssertionError("size " + deque.size() + " should be " + expected.length());
+        }
+    }
+
+    private static <T> void assertObjectEquals(T expected, T actual) {
+        if (!actual.equals(expected)) {
+            String message = String.format("%s should be %s", actual, expected);
+            throw new RuntimeException(message);
+        }
+    }
+}
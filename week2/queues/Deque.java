@@ -1,6 +1,28 @@
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
 import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
 
+/**
+ * Iterators from {@link #iterator()} are fail-fast: once the deque has been
+ * modified, their next call to {@code next()} throws
+ * {@code ConcurrentModificationException}. {@link #snapshotIterator()} instead
+ * walks the deque as it was when the iterator was created, whatever changes
+ * follow, without copying it.
+ * <p>
+ * A snapshot freezes the next links of the nodes that exist when it is taken,
+ * the current generation. Adding at either end and removing from the front
+ * never change those links; removing a frozen node from the back leaves the
+ * link to it in place, and only a later {@code addLast} that would overwrite
+ * that link copies the live nodes into the new generation first. Writers
+ * therefore copy at most once per snapshot, and only for that pattern.
+ * <p>
+ * Nodes stay frozen only while a snapshot that saw them is open, i.e. not
+ * exhausted and not yet collected. Once none is, the links kept for them are
+ * cleared, so removed items do not loiter.
+ */
 public class Deque<Item>
         implements Iterable<Item> {
 
@@ -9,6 +31,13 @@ public class Deque<Item>
     private Node first;
     private Node last;
     private int size;
+    private int modCount;
+    // nodes created before the latest snapshot have an older generation
+    private int generation;
+    // nodes up to this generation are frozen, -1 while no snapshot is open
+    private int frozenGeneration = -1;
+    // snapshots that may still be open, oldest first
+    private final List<WeakReference<DequeSnapshotIterator>> snapshots = new ArrayList<>();
 
     public Deque() {
 
@@ -28,10 +57,10 @@ public class Deque<Item>
         }
 
         size++;
+        modCount++;
         Node oldFirst = first;
 
-        first = new Node();
-        first.item = item;
+        first = new Node(item);
 
         if (oldFirst == null) {
             last = first;
@@ -46,11 +75,16 @@ public class Deque<Item>
             throw new IllegalArgumentException(CANNOT_ADD_NULL_VALUE);
         }
 
+        if ((last != null) && isFrozen(last) && (last.next != null)) {
+            // a snapshot still walks through last.next
+            copyNodes();
+        }
+
         size++;
+        modCount++;
         Node oldLast = last;
 
-        last = new Node();
-        last.item = item;
+        last = new Node(item);
 
         if (oldLast == null) {
             first = last;
@@ -71,11 +105,15 @@ public class Deque<Item>
             Node oldFirst = first;
             first = oldFirst.next;
 
-            oldFirst.next = null;
+            if (!isFrozen(oldFirst)) {
+                oldFirst.next = null;
+            }
+
             first.previous = null;
         }
 
         size--;
+        modCount++;
 
         return result;
     }
@@ -92,10 +130,14 @@ public class Deque<Item>
             last = oldLast.previous;
 
             oldLast.previous = null;
-            last.next = null;
+
+            if (!isFrozen(oldLast)) {
+                last.next = null;
+            }
         }
 
         size--;
+        modCount++;
 
         return result;
     }
@@ -105,6 +147,79 @@ public class Deque<Item>
         return new DequeIterator(this);
     }
 
+    /**
+     * Returns an iterator over the items present now, first to last, that is
+     * unaffected by later changes to the deque.
+     */
+    public Iterator<Item> snapshotIterator() {
+        refreshSnapshots();
+        DequeSnapshotIterator result = new DequeSnapshotIterator(this);
+
+        if (result.hasNext()) {
+            frozenGeneration = generation++;
+            snapshots.add(new WeakReference<>(result));
+        }
+
+        return result;
+    }
+
+    private boolean isFrozen(Node node) {
+        if (node.generation > frozenGeneration) {
+            return false;
+        }
+
+        // snapshots may have ended since the last check
+        refreshSnapshots();
+        return node.generation <= frozenGeneration;
+    }
+
+    // forgets ended snapshots and unlinks removed nodes once none is open
+    private void refreshSnapshots() {
+        snapshots.removeIf(reference -> {
+            DequeSnapshotIterator snapshot = reference.get();
+            return (snapshot == null) || !snapshot.hasNext();
+        });
+
+        if (snapshots.isEmpty()) {
+            frozenGeneration = -1;
+
+            if (last != null) {
+                last.next = null;
+            }
+        } else {
+            frozenGeneration = snapshots.get(snapshots.size() - 1).get().generation;
+        }
+    }
+
+    // moves the live items onto new nodes, leaving the frozen ones to snapshots
+    private void copyNodes() {
+        Node copy = null;
+
+        for (Node node = last; node != first; node = node.previous) {
+            Node previous = new Node(node.item);
+            previous.next = copy;
+
+            if (copy != null) {
+                copy.previous = previous;
+            } else {
+                last = previous;
+            }
+
+            copy = previous;
+        }
+
+        Node newFirst = new Node(first.item);
+        newFirst.next = copy;
+
+        if (copy != null) {
+            copy.previous = newFirst;
+        } else {
+            last = newFirst;
+        }
+
+        first = newFirst;
+    }
+
     private void validateRemove() {
         if (isEmpty()) {
             throw new NoSuchElementException();
@@ -113,22 +228,71 @@ public class Deque<Item>
 
     private class Node {
         private Node previous;
-        private Item item;
+        private final Item item;
         private Node next;
+        private final int generation;
+
+        private Node(Item item) {
+            this.item = item;
+            this.generation = Deque.this.generation;
+        }
     }
 
     private class DequeIterator
             implements Iterator<Item> {
 
+        private final Deque<Item> deque;
+        private final int expectedModCount;
         private Node next;
+        // last.next may still link to nodes kept for a snapshot
+        private int remaining;
 
         private DequeIterator(Deque<Item> deque) {
-            next = deque.first;
+            this.deque = deque;
+            this.expectedModCount = deque.modCount;
+            this.next = deque.first;
+            this.remaining = deque.size;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return remaining > 0;
+        }
+
+        @Override
+        public Item next() {
+            if (deque.modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            Item result = next.item;
+            next = next.next;
+            remaining--;
+            return result;
+        }
+    }
+
+    private class DequeSnapshotIterator
+            implements Iterator<Item> {
+
+        // the generation of the nodes this snapshot walks
+        private final int generation;
+        private Node next;
+        private int remaining;
+
+        private DequeSnapshotIterator(Deque<Item> deque) {
+            this.generation = deque.generation;
+            this.next = deque.first;
+            this.remaining = deque.size;
         }
 
         @Override
         public boolean hasNext() {
-            return (next != null);
+            return remaining > 0;
         }
 
         @Override
@@ -139,6 +303,14 @@ public class Deque<Item>
 
             Item result = next.item;
             next = next.next;
+            remaining--;
+
+            if (remaining == 0) {
+                // let the deque drop the links kept for this snapshot
+                next = null;
+                refreshSnapshots();
+            }
+
             return result;
         }
     }
@@ -228,6 +400,116 @@ public class Deque<Item>
         assertLastNull(deque);
         assertIsEmpty(deque, true);
         assertIterator(deque, "");
+
+        assertFailFast();
+        assertSnapshots(100000);
+        assertNoLoitering();
+    }
+
+    // removed nodes stay linked only while a snapshot can still reach them
+    private static void assertNoLoitering() {
+        Deque<String> deque = new Deque<>();
+        deque.addLast("a");
+        deque.addLast("b");
+        deque.addLast("c");
+
+        Iterator<String> snapshot = deque.snapshotIterator();
+        deque.removeLast();
+
+        if (deque.last.next == null) {
+            throw new AssertionError("an open snapshot should keep its link to c");
+        }
+
+        while (snapshot.hasNext()) {
+            snapshot.next();
+        }
+
+        if (deque.last.next != null) {
+            throw new AssertionError("c should be unlinked once the snapshot is exhausted");
+        }
+
+        deque.addLast("c");
+        deque.snapshotIterator().next();
+        deque.removeLast();
+        System.gc();
+        deque.removeLast();
+
+        String message = String.format("links released after an abandoned snapshot: %s",
+                deque.first.next == null);
+        System.out.println(message);
+    }
+
+    private static void assertFailFast() {
+        Deque<String> deque = new Deque<>();
+        deque.addLast("a");
+        deque.addLast("b");
+
+        Iterator<String> it = deque.iterator();
+        it.next();
+        deque.removeLast();
+
+        try {
+            it.next();
+            throw new AssertionError("next after removeLast should throw");
+        } catch (ConcurrentModificationException e) {
+            System.out.println("next after removeLast throws");
+        }
+    }
+
+    // snapshots taken at random points must return exactly the items present
+    // then, in order, however the deque changes while they are read
+    private static void assertSnapshots(int operations) {
+        Deque<Integer> deque = new Deque<>();
+        java.util.ArrayDeque<Integer> expected = new java.util.ArrayDeque<>();
+        java.util.List<Iterator<Integer>> snapshots = new java.util.ArrayList<>();
+        java.util.List<java.util.List<Integer>> snapshotItems = new java.util.ArrayList<>();
+        java.util.List<java.util.List<Integer>> snapshotRead = new java.util.ArrayList<>();
+        java.util.Random random = new java.util.Random(1);
+
+        for (int i = 0; i < operations; i++) {
+            int choice = random.nextInt(100);
+
+            if ((choice < 24) || ((choice < 96) && expected.isEmpty())) {
+                deque.addFirst(i);
+                expected.addFirst(i);
+            } else if (choice < 48) {
+                deque.addLast(i);
+                expected.addLast(i);
+            } else if (choice < 72) {
+                assertEqualsQuietly(expected.removeFirst(), deque.removeFirst());
+            } else if (choice < 96) {
+                assertEqualsQuietly(expected.removeLast(), deque.removeLast());
+            } else if (choice < 98) {
+                snapshots.add(deque.snapshotIterator());
+                snapshotItems.add(new java.util.ArrayList<>(expected));
+                snapshotRead.add(new java.util.ArrayList<>());
+            }
+
+            // advance every open snapshot a little
+            for (int s = 0; s < snapshots.size(); s++) {
+                if (snapshots.get(s).hasNext()) {
+                    snapshotRead.get(s).add(snapshots.get(s).next());
+                }
+            }
+        }
+
+        java.util.List<Integer> live = new java.util.ArrayList<>();
+
+        for (Integer item : deque) {
+            live.add(item);
+        }
+
+        assertEqualsQuietly(new java.util.ArrayList<>(expected), live);
+
+        for (int s = 0; s < snapshots.size(); s++) {
+            while (snapshots.get(s).hasNext()) {
+                snapshotRead.get(s).add(snapshots.get(s).next());
+            }
+
+            assertEqualsQuietly(snapshotItems.get(s), snapshotRead.get(s));
+        }
+
+        System.out.println(snapshots.size() + " snapshots match");
     }
 
     private static void assertIterator(Deque<String> deque, String expected) {
@@ -282,6 +564,13 @@ public class Deque<Item>
         }
     }
 
+    private static <T> void assertEqualsQuietly(T expected, T actual) {
+        if (!actual.equals(expected)) {
+            String message = String.format("%s should be %s", actual, expected);
+            throw new RuntimeException(message);
+        }
+    }
+
     private static <T> void assertObjectEquals(T expected, T actual) {
         String message = String.format("%s should be %s", actual, expected);
         System.out.println(message);
@@ -0,0 +1,209 @@
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.function.IntConsumer;
+
+/**
+ * A {@link ResizingArrayDeque} of unboxed int values. Removing from an empty
+ * deque throws {@code NoSuchElementException} as in {@link Deque}; there is
+ * no null to reject. It is deliberately not {@code Iterable<Integer>}, so
+ * traversal never boxes: use {@link #iterator()} or {@link #forEach}.
+ */
+public class IntDeque {
+
+    private static final int MIN_CAPACITY = 8;
+
+    private int[] data;
+    private int head;
+    private int size;
+
+    public IntDeque() {
+        data = new int[MIN_CAPACITY];
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void addFirst(int item) {
+        autoSizeUp();
+        head = (head - 1) & (data.length - 1);
+        data[head] = item;
+        size++;
+    }
+
+    public void addLast(int item) {
+        autoSizeUp();
+        data[(head + size) & (data.length - 1)] = item;
+        size++;
+    }
+
+    public int removeFirst() {
+        validateRemove();
+        int result = data[head];
+
+        head = (head + 1) & (data.length - 1);
+        size--;
+
+        autoSizeDown();
+
+        return result;
+    }
+
+    public int removeLast() {
+        validateRemove();
+        int result = data[(head + size - 1) & (data.length - 1)];
+
+        size--;
+
+        autoSizeDown();
+
+        return result;
+    }
+
+    /**
+     * Passes every value to {@code action}, first to last.
+     */
+    public void forEach(IntConsumer action) {
+        int[] data = this.data;
+        int firstPart = Math.min(size, data.length - head);
+
+        for (int i = head; i < (head + firstPart); i++) {
+            action.accept(data[i]);
+        }
+
+        for (int i = 0; i < (size - firstPart); i++) {
+            action.accept(data[i]);
+        }
+    }
+
+    public PrimitiveIterator.OfInt iterator() {
+        return new IntDequeIterator();
+    }
+
+    private void autoSizeDown() {
+        if ((data.length > MIN_CAPACITY) && (size == (data.length / 4))) {
+            resize(data.length / 2);
+        }
+    }
+
+    private void autoSizeUp() {
+        if (size == data.length) {
+            if (data.length == (1 << 30)) {
+                throw new IllegalStateException("Deque is full");
+            }
+
+            resize(data.length * 2);
+        }
+    }
+
+    // unwraps the values to the front of the new array
+    private void resize(int newSize) {
+        int[] newData = new int[newSize];
+        int firstPart = Math.min(size, data.length - head);
+
+        System.arraycopy(data, head, newData, 0, firstPart);
+        System.arraycopy(data, 0, newData, firstPart, size - firstPart);
+
+        data = newData;
+        head = 0;
+    }
+
+    private void validateRemove() {
+        if (isEmpty()) {
+            throw new NoSuchElementException();
+        }
+    }
+
+    private class IntDequeIterator
+            implements PrimitiveIterator.OfInt {
+
+        private int offset;
+
+        @Override
+        public boolean hasNext() {
+            return offset < size;
+        }
+
+        @Override
+        public int nextInt() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            return data[(head + offset++) & (data.length - 1)];
+        }
+    }
+
+    public static void main(String[] args) {
+        IntDeque deque = new IntDeque();
+        ResizingArrayDeque<Integer> expected = new ResizingArrayDeque<>();
+        java.util.Random random = new java.util.Random(1);
+
+        for (int i = 0; i < 1000000; i++) {
+            // drift the size up and down so the deque both grows and shrinks
+            boolean add = expected.isEmpty()
+                    || (random.nextInt(100) < (((i / 100000) % 2 == 0) ? 60 : 40));
+
+            if (add) {
+                int item = random.nextInt();
+
+                if (random.nextBoolean()) {
+                    deque.addFirst(item);
+                    expected.addFirst(item);
+                } else {
+                    deque.addLast(item);
+                    expected.addLast(item);
+                }
+            } else if (random.nextBoolean()) {
+                assertEquals(expected.removeFirst(), deque.removeFirst());
+            } else {
+                assertEquals(expected.removeLast(), deque.removeLast());
+            }
+
+            if ((i % 99991) == 0) {
+                assertSameValues(deque, expected);
+            }
+        }
+
+        while (!deque.isEmpty()) {
+            assertEquals(expected.removeLast(), deque.removeLast());
+        }
+
+        try {
+            deque.removeFirst();
+            throw new AssertionError("removeFirst on an empty deque should throw");
+        } catch (NoSuchElementException e) {
+            System.out.println("removeFirst on an empty deque throws");
+        }
+
+        System.out.println("IntDeque matches ResizingArrayDeque");
+    }
+
+    private static void assertSameValues(IntDeque deque, ResizingArrayDeque<Integer> expected) {
+        PrimitiveIterator.OfInt it = deque.iterator();
+        StringBuilder forEachValues = new StringBuilder();
+        StringBuilder expectedValues = new StringBuilder();
+
+        deque.forEach(item -> forEachValues.append(item).append(' '));
+
+        for (Integer item : expected) {
+            assertEquals(item, it.nextInt());
+            expectedValues.append(item).append(' ');
+        }
+
+        if (it.hasNext() || !forEachValues.toString().equals(expectedValues.toString())) {
+            throw new AssertionError("iteration differs");
+        }
+    }
+
+    private static void assertEquals(int expected, int actual) {
+        if (actual != expected) {
+            String message = String.format("%s should be %s", actual, expected);
+            throw new AssertionError(message);
+        }
+    }
+}
@@ -0,0 +1,210 @@
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.function.LongConsumer;
+
+/**
+ * A {@link ResizingArrayDeque} of unboxed long values. Removing from an
+ * empty deque throws {@code NoSuchElementException} as in {@link Deque};
+ * there is no null to reject. It is deliberately not
+ * {@code Iterable<Long>}, so traversal never boxes: use {@link #iterator()}
+ * or {@link #forEach}.
+ */
+public class LongDeque {
+
+    private static final int MIN_CAPACITY = 8;
+
+    private long[] data;
+    private int head;
+    private int size;
+
+    public LongDeque() {
+        data = new long[MIN_CAPACITY];
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void addFirst(long item) {
+        autoSizeUp();
+        head = (head - 1) & (data.length - 1);
+        data[head] = item;
+        size++;
+    }
+
+    public void addLast(long item) {
+        autoSizeUp();
+        data[(head + size) & (data.length - 1)] = item;
+        size++;
+    }
+
+    public long removeFirst() {
+        validateRemove();
+        long result = data[head];
+
+        head = (head + 1) & (data.length - 1);
+        size--;
+
+        autoSizeDown();
+
+        return result;
+    }
+
+    public long removeLast() {
+        validateRemove();
+        long result = data[(head + size - 1) & (data.length - 1)];
+
+        size--;
+
+        autoSizeDown();
+
+        return result;
+    }
+
+    /**
+     * Passes every value to {@code action}, first to last.
+     */
+    public void forEach(LongConsumer action) {
+        long[] data = this.data;
+        int firstPart = Math.min(size, data.length - head);
+
+        for (int i = head; i < (head + firstPart); i++) {
+            action.accept(data[i]);
+        }
+
+        for (int i = 0; i < (size - firstPart); i++) {
+            action.accept(data[i]);
+        }
+    }
+
+    public PrimitiveIterator.OfLong iterator() {
+        return new LongDequeIterator();
+    }
+
+    private void autoSizeDown() {
+        if ((data.length > MIN_CAPACITY) && (size == (data.length / 4))) {
+            resize(data.length / 2);
+        }
+    }
+
+    private void autoSizeUp() {
+        if (size == data.length) {
+            if (data.length == (1 << 30)) {
+                throw new IllegalStateException("Deque is full");
+            }
+
+            resize(data.length * 2);
+        }
+    }
+
+    // unwraps the values to the front of the new array
+    private void resize(int newSize) {
+        long[] newData = new long[newSize];
+        int firstPart = Math.min(size, data.length - head);
+
+        System.arraycopy(data, head, newData, 0, firstPart);
+        System.arraycopy(data, 0, newData, firstPart, size - firstPart);
+
+        data = newData;
+        head = 0;
+    }
+
+    private void validateRemove() {
+        if (isEmpty()) {
+            throw new NoSuchElementException();
+        }
+    }
+
+    private class LongDequeIterator
+            implements PrimitiveIterator.OfLong {
+
+        private int offset;
+
+        @Override
+        public boolean hasNext() {
+            return offset < size;
+        }
+
+        @Override
+        public long nextLong() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            return data[(head + offset++) & (data.length - 1)];
+        }
+    }
+
+    public static void main(String[] args) {
+        LongDeque deque = new LongDeque();
+        ResizingArrayDeque<Long> expected = new ResizingArrayDeque<>();
+        java.util.Random random = new java.util.Random(1);
+
+        for (int i = 0; i < 1000000; i++) {
+            // drift the size up and down so the deque both grows and shrinks
+            boolean add = expected.isEmpty()
+                    || (random.nextInt(100) < (((i / 100000) % 2 == 0) ? 60 : 40));
+
+            if (add) {
+                long item = random.nextLong();
+
+                if (random.nextBoolean()) {
+                    deque.addFirst(item);
+                    expected.addFirst(item);
+                } else {
+                    deque.addLast(item);
+                    expected.addLast(item);
+                }
+            } else if (random.nextBoolean()) {
+                assertEquals(expected.removeFirst(), deque.removeFirst());
+            } else {
+                assertEquals(expected.removeLast(), deque.removeLast());
+            }
+
+            if ((i % 99991) == 0) {
+                assertSameValues(deque, expected);
+            }
+        }
+
+        while (!deque.isEmpty()) {
+            assertEquals(expected.removeLast(), deque.removeLast());
+        }
+
+        try {
+            deque.removeFirst();
+            throw new AssertionError("removeFirst on an empty deque should throw");
+        } catch (NoSuchElementException e) {
+            System.out.println("removeFirst on an empty deque throws");
+        }
+
+        System.out.println("LongDeque matches ResizingArrayDeque");
+    }
+
+    private static void assertSameValues(LongDeque deque, ResizingArrayDeque<Long> expected) {
+        PrimitiveIterator.OfLong it = deque.iterator();
+        StringBuilder forEachValues = new StringBuilder();
+        StringBuilder expectedValues = new StringBuilder();
+
+        deque.forEach(item -> forEachValues.append(item).append(' '));
+
+        for (Long item : expected) {
+            assertEquals(item, it.nextLong());
+            expectedValues.append(item).append(' ');
+        }
+
+        if (it.hasNext() || !forEachValues.toString().equals(expectedValues.toString())) {
+            throw new AssertionError("iteration differs");
+        }
+    }
+
+    private static void assertEquals(long expected, long actual) {
+        if (actual != expected) {
+            String message = String.format("%s should be %s", actual, expected);
+            throw new AssertionError(message);
+        }
+    }
+}
@@ -1,13 +1,25 @@
+import java.util.ConcurrentModificationException;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 
 import edu.princeton.cs.algs4.StdRandom;
 
+/**
+ * Iterators from {@link #iterator()} are fail-fast: once the queue has been
+ * modified, their next call to {@code next()} throws
+ * {@code ConcurrentModificationException}. {@link #snapshotIterator()} instead
+ * shares the current array with the queue, which copies it before its next
+ * dequeue. Enqueues only write past the end that snapshots can see and
+ * resizes always allocate, so writers copy at most once per snapshot.
+ */
 public class RandomizedQueue<Item>
         implements Iterable<Item> {
 
     private Item[] data;
     private int enqueueIndex = 0;
+    private int modCount;
+    // whether a snapshot iterator may still read data
+    private boolean dataShared;
 
     public RandomizedQueue() {
         data = createArray(1);
@@ -31,6 +43,13 @@ public class RandomizedQueue<Item>
 
     public Item dequeue() {
         validateHasElement();
+
+        if (dataShared) {
+            data = data.clone();
+            dataShared = false;
+        }
+
+        modCount++;
         int dequeueIndex = getRandomDataIndex();
         Item result = data[dequeueIndex];
 
@@ -48,6 +67,7 @@ public class RandomizedQueue<Item>
         if (item == null) {
             throw new IllegalArgumentException("Cannot enqueue a null item");
         }
+        modCount++;
         data[enqueueIndex++] = item;
         autoSizeUp();
     }
@@ -65,12 +85,22 @@ public class RandomizedQueue<Item>
         return new RandomizedQueueIterator(this);
     }
 
+    /**
+     * Returns an iterator over the items present now, in random order, that
+     * is unaffected by later changes to the queue.
+     */
+    public Iterator<Item> snapshotIterator() {
+        dataShared = true;
+        return new RandomizedQueueIterator(data, enqueueIndex);
+    }
+
     private void resize(int newSize) {
         Item[] newData = createArray(newSize);
         for (int i = 0; i < enqueueIndex; i++) {
             newData[i] = data[i];
         }
         data = newData;
+        dataShared = false;
     }
 
     public Item sample() {
@@ -89,35 +119,101 @@ public class RandomizedQueue<Item>
         }
     }
 
+    /**
+     * Visits the items in a random order generated on demand, so creating an
+     * iterator costs O(1) memory and time however large the queue is, and each
+     * {@code next()} takes expected O(1) time. Position i of the order is a
+     * keyed eight-round Feistel permutation of i over the smallest
+     * power-of-four range covering the size, re-applied until the result
+     * falls inside the queue ("cycle walking"). The walk stays a bijection on
+     * [0, size) and needs fewer than four applications on average. The order
+     * is a pseudorandom permutation keyed from StdRandom rather than a
+     * uniformly chosen one.
+     */
     private class RandomizedQueueIterator
             implements Iterator<Item> {
 
+        // four rounds leave the order visibly biased for small sizes
+        private static final int ROUNDS = 8;
+        private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+        // null for snapshots, which never see modifications
         private final RandomizedQueue<Item> queue;
-        private final int[] order;
+        private final Item[] data;
+        private final int expectedModCount;
+        private final int size;
+        private final int halfBits;
+        private final long halfMask;
+        private final long key;
         private int orderIndex = 0;
 
         public RandomizedQueueIterator(RandomizedQueue<Item> queue) {
+            this(queue, queue.data, queue.enqueueIndex);
+        }
+
+        private RandomizedQueueIterator(Item[] data, int size) {
+            this(null, data, size);
+        }
+
+        private RandomizedQueueIterator(RandomizedQueue<Item> queue, Item[] data, int size) {
             this.queue = queue;
-            this.order = StdRandom.permutation(queue.enqueueIndex);
+            this.data = data;
+            this.expectedModCount = (queue == null) ? 0 : queue.modCount;
+            this.size = size;
+
+            int bits = 32 - Integer.numberOfLeadingZeros(Math.max(1, size - 1));
+            this.halfBits = (bits + 1) / 2;
+            this.halfMask = (1L << halfBits) - 1;
+            this.key = ((long) StdRandom.uniform(Integer.MAX_VALUE) << 32)
+                    ^ StdRandom.uniform(Integer.MAX_VALUE);
         }
 
         @Override
         public boolean hasNext() {
-            return order.length > orderIndex;
+            return size > orderIndex;
         }
 
         @Override
         public Item next() {
+            if ((queue != null) && (queue.modCount != expectedModCount)) {
+                throw new ConcurrentModificationException();
+            }
+
             if (!hasNext()) {
                 throw new NoSuchElementException();
             }
 
-            int queueIndex = order[orderIndex++];
-            return queue.data[queueIndex];
+            long queueIndex = orderIndex++;
+
+            do {
+                queueIndex = permute(queueIndex);
+            } while (queueIndex >= size);
+
+            return data[(int) queueIndex];
+        }
+
+        private long permute(long index) {
+            long left = index >>> halfBits;
+            long right = index & halfMask;
+
+            for (int round = 0; round < ROUNDS; round++) {
+                long next = left ^ (mix64(right + key + (round * GOLDEN_GAMMA)) & halfMask);
+                left = right;
+                right = next;
+            }
+
+            return (left << halfBits) | right;
         }
 
     }
 
+    // the SplitMix64 finalizer
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
     public static void main(String[] args) {
         RandomizedQueue<String> queue = new RandomizedQueue<>();
 
@@ -170,6 +266,144 @@ public class RandomizedQueue<Item>
         print(queue);
         assertQueueSize(queue, 0);
         assertQueueDataLength(queue, 1);
+
+        assertFailFast();
+        assertSnapshots(100000);
+        assertIteratorPermutes();
+    }
+
+    // every size up to 2049 and a few around powers of four visit each item
+    // exactly once, and the first item is not biased towards any position
+    private static void assertIteratorPermutes() {
+        RandomizedQueue<Integer> queue = new RandomizedQueue<>();
+        int[] sizes = new int[2050 + 6];
+
+        for (int i = 0; i <= 2049; i++) {
+            sizes[i] = i;
+        }
+
+        sizes[2050] = 65535;
+        sizes[2051] = 65536;
+        sizes[2052] = 65537;
+        sizes[2053] = 262143;
+        sizes[2054] = 262144;
+        sizes[2055] = 262145;
+
+        for (int size : sizes) {
+            while (queue.size() < size) {
+                queue.enqueue(queue.size());
+            }
+
+            boolean[] seen = new boolean[size];
+            int count = 0;
+
+            for (Integer item : queue) {
+                if (seen[item]) {
+                    throw new AssertionError(item + " was visited twice for size " + size);
+                }
+
+                seen[item] = true;
+                count++;
+            }
+
+            if (count != size) {
+                throw new AssertionError(count + " items visited for size " + size);
+            }
+        }
+
+        RandomizedQueue<Integer> small = new RandomizedQueue<>();
+        int size = 10;
+        int iterators = 100000;
+        int[] firstCounts = new int[size];
+
+        for (int i = 0; i < size; i++) {
+            small.enqueue(i);
+        }
+
+        for (int i = 0; i < iterators; i++) {
+            firstCounts[small.iterator().next()]++;
+        }
+
+        double chiSquared = 0;
+        double expected = iterators / (double) size;
+
+        for (int count : firstCounts) {
+            chiSquared += (count - expected) * (count - expected) / expected;
+        }
+
+        // 9 degrees of freedom, p = 0.001
+        String message = String.format("first item chi-squared %.2f should be below 27.88",
+                chiSquared);
+        System.out.println(message);
+
+        if (chiSquared >= 27.88) {
+            throw new AssertionError(message);
+        }
+    }
+
+    private static void assertFailFast() {
+        RandomizedQueue<String> queue = new RandomizedQueue<>();
+        queue.enqueue("a");
+        queue.enqueue("b");
+
+        Iterator<String> it = queue.iterator();
+        it.next();
+        queue.enqueue("c");
+
+        try {
+            it.next();
+            throw new AssertionError("next after enqueue should throw");
+        } catch (ConcurrentModificationException e) {
+            System.out.println("next after enqueue throws");
+        }
+    }
+
+    // snapshots taken at random points must return exactly the items present
+    // then, however the queue changes while they are read
+    private static void assertSnapshots(int operations) {
+        RandomizedQueue<Integer> queue = new RandomizedQueue<>();
+        java.util.List<Integer> expected = new java.util.ArrayList<>();
+        java.util.List<Iterator<Integer>> snapshots = new java.util.ArrayList<>();
+        java.util.List<java.util.List<Integer>> snapshotItems = new java.util.ArrayList<>();
+        java.util.List<java.util.List<Integer>> snapshotRead = new java.util.ArrayList<>();
+        java.util.Random random = new java.util.Random(1);
+
+        for (int i = 0; i < operations; i++) {
+            int choice = random.nextInt(100);
+
+            if ((choice < 50) || expected.isEmpty()) {
+                queue.enqueue(i);
+                expected.add(i);
+            } else if (choice < 95) {
+                expected.remove(queue.dequeue());
+            } else if (choice < 97) {
+                snapshots.add(queue.snapshotIterator());
+                snapshotItems.add(new java.util.ArrayList<>(expected));
+                snapshotRead.add(new java.util.ArrayList<>());
+            }
+
+            // advance every open snapshot a little
+            for (int s = 0; s < snapshots.size(); s++) {
+                if (snapshots.get(s).hasNext()) {
+                    snapshotRead.get(s).add(snapshots.get(s).next());
+                }
+            }
+        }
+
+        for (int s = 0; s < snapshots.size(); s++) {
+            while (snapshots.get(s).hasNext()) {
+                snapshotRead.get(s).add(snapshots.get(s).next());
+            }
+
+            java.util.Collections.sort(snapshotRead.get(s));
+            java.util.Collections.sort(snapshotItems.get(s));
+
+            if (!snapshotRead.get(s).equals(snapshotItems.get(s))) {
+                throw new AssertionError("snapshot " + s + " differs");
+            }
+        }
+
+        System.out.println(snapshots.size() + " snapshots match");
     }
 
     private static void assertQueueDataLength(RandomizedQueue<String> queue, int expected) {
@@ -0,0 +1,257 @@
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * The same API as {@link Deque}, stored in a circular array instead of linked
+ * nodes. The capacity is a power of two so positions wrap with a mask; it
+ * doubles when full and halves when a quarter full, so every operation is
+ * amortized constant time and no element costs more than four references.
+ */
+public class ResizingArrayDeque<Item>
+        implements Iterable<Item> {
+
+    private static final String CANNOT_ADD_NULL_VALUE = "Cannot add null value";
+    private static final int MIN_CAPACITY = 8;
+
+    private Item[] data;
+    private int head;
+    private int size;
+
+    public ResizingArrayDeque() {
+        data = createArray(MIN_CAPACITY);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Item[] createArray(int size) {
+        return (Item[]) new Object[size];
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void addFirst(Item item) {
+        if (item == null) {
+            throw new IllegalArgumentException(CANNOT_ADD_NULL_VALUE);
+        }
+
+        autoSizeUp();
+        head = (head - 1) & (data.length - 1);
+        data[head] = item;
+        size++;
+    }
+
+    public void addLast(Item item) {
+        if (item == null) {
+            throw new IllegalArgumentException(CANNOT_ADD_NULL_VALUE);
+        }
+
+        autoSizeUp();
+        data[(head + size) & (data.length - 1)] = item;
+        size++;
+    }
+
+    public Item removeFirst() {
+        validateRemove();
+        Item result = data[head];
+
+        data[head] = null;
+        head = (head + 1) & (data.length - 1);
+        size--;
+
+        autoSizeDown();
+
+        return result;
+    }
+
+    public Item removeLast() {
+        validateRemove();
+        int lastIndex = (head + size - 1) & (data.length - 1);
+        Item result = data[lastIndex];
+
+        data[lastIndex] = null;
+        size--;
+
+        autoSizeDown();
+
+        return result;
+    }
+
+    private void autoSizeDown() {
+        if ((data.length > MIN_CAPACITY) && (size == (data.length / 4))) {
+            resize(data.length / 2);
+        }
+    }
+
+    private void autoSizeUp() {
+        if (size == data.length) {
+            if (data.length == (1 << 30)) {
+                throw new IllegalStateException("Deque is full");
+            }
+
+            resize(data.length * 2);
+        }
+    }
+
+    // unwraps the elements to the front of the new array
+    private void resize(int newSize) {
+        Item[] newData = createArray(newSize);
+        int firstPart = Math.min(size, data.length - head);
+
+        System.arraycopy(data, head, newData, 0, firstPart);
+        System.arraycopy(data, 0, newData, firstPart, size - firstPart);
+
+        data = newData;
+        head = 0;
+    }
+
+    @Override
+    public Iterator<Item> iterator() {
+        return new ResizingArrayDequeIterator();
+    }
+
+    private void validateRemove() {
+        if (isEmpty()) {
+            throw new NoSuchElementException();
+        }
+    }
+
+    private class ResizingArrayDequeIterator
+            implements Iterator<Item> {
+
+        private int offset;
+
+        @Override
+        public boolean hasNext() {
+            return offset < size;
+        }
+
+        @Override
+        public Item next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            return data[(head + offset++) & (data.length - 1)];
+        }
+    }
+
+    public static void main(String[] args) {
+        ResizingArrayDeque<String> deque = new ResizingArrayDeque<>();
+        assertIsEmpty(deque, true);
+        assertIterator(deque, "");
+
+        deque.addFirst("c");
+        deque.addLast("d");
+        deque.addFirst("b");
+        deque.addFirst("a");
+        deque.addLast("e");
+        deque.addLast("f");
+        assertIsEmpty(deque, false);
+        assertIterator(deque, "abcdef");
+
+        assertObjectEquals("f", deque.removeLast());
+        assertObjectEquals("a", deque.removeFirst());
+        assertIterator(deque, "bcde");
+
+        assertObjectEquals("b", deque.removeFirst());
+        assertObjectEquals("e", deque.removeLast());
+        assertObjectEquals("d", deque.removeLast());
+        assertObjectEquals("c", deque.removeLast());
+        assertIsEmpty(deque, true);
+        assertIterator(deque, "");
+
+        assertMatchesLinkedDeque(1000000);
+    }
+
+    // random operations, mirrored on a Deque, across many resizes and wraps
+    private static void assertMatchesLinkedDeque(int operations) {
+        ResizingArrayDeque<Integer> deque = new ResizingArrayDeque<>();
+        Deque<Integer> expected = new Deque<>();
+        java.util.Random random = new java.util.Random(1);
+        int maxCapacity = 0;
+
+        for (int i = 0; i < operations; i++) {
+            // drift the size up and down so the deque both grows and shrinks
+            boolean add = expected.isEmpty()
+                    || (random.nextInt(100) < (((i / 100000) % 2 == 0) ? 60 : 40));
+
+            if (add) {
+                if (random.nextBoolean()) {
+                    deque.addFirst(i);
+                    expected.addFirst(i);
+                } else {
+                    deque.addLast(i);
+                    expected.addLast(i);
+                }
+            } else if (random.nextBoolean()) {
+                assertObjectEquals(expected.removeFirst(), deque.removeFirst());
+            } else {
+                assertObjectEquals(expected.removeLast(), deque.removeLast());
+            }
+
+            maxCapacity = Math.max(maxCapacity, ((Object[]) deque.data).length);
+
+            if (deque.size() != expected.size()) {
+                throw new AssertionError("size " + deque.size() + " should be " + expected.size());
+            }
+
+            if ((i % 99991) == 0) {
+                Iterator<Integer> actualIt = deque.iterator();
+
+                for (Integer item : expected) {
+                    if (!item.equals(actualIt.next())) {
+                        throw new AssertionError("iteration differs at operation " + i);
+                    }
+                }
+
+                if (actualIt.hasNext()) {
+                    throw new AssertionError("iteration is too long at operation " + i);
+                }
+            }
+        }
+
+        while (!deque.isEmpty()) {
+            deque.removeFirst();
+        }
+
+        String message = String.format("capacity %d after growing to %d should be %d",
+                ((Object[]) deque.data).length, maxCapacity, MIN_CAPACITY);
+        System.out.println(message);
+
+        if (((Object[]) deque.data).length != MIN_CAPACITY) {
+            throw new AssertionError(message);
+        }
+    }
+
+    private static void assertIterator(ResizingArrayDeque<String> deque, String expected) {
+        StringBuilder sb = new StringBuilder();
+
+        for (String item : deque) {
+            sb.append(item);
+        }
+
+        assertObjectEquals(expected, sb.toString());
+    }
+
+    private static void assertIsEmpty(ResizingArrayDeque<String> deque, boolean expected) {
+        boolean actual = deque.isEmpty();
+        String message = String.format("isEmpty %s should be %s", actual, expected);
+        System.out.println(message);
+
+        if (actual != expected) {
+            throw new AssertionError();
+        }
+    }
+
+    private static <T> void assertObjectEquals(T expected, T actual) {
+        if (!actual.equals(expected)) {
+            String message = String.format("%s should be %s", actual, expected);
+            throw new RuntimeException(message);
+        }
+    }
+}